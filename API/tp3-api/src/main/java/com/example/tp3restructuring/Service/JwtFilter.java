@@ -1,5 +1,6 @@
 package com.example.tp3restructuring.Service;
 
+import com.example.tp3restructuring.model.VerifiedToken;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -46,8 +47,9 @@ public class JwtFilter extends OncePerRequestFilter {
         String token = authHeader.substring(7);
 
         try {
-            String userId = jwtService.validateAndExtractUserId(token);
-            String email = jwtService.extractEmail(token);
+            VerifiedToken claims = jwtService.verify(token);
+            String userId = claims.userId();
+            String email = claims.email();
 
             UsernamePasswordAuthenticationToken auth =
                     new UsernamePasswordAuthenticationToken(
@@ -1,13 +1,27 @@
 package com.example.tp3restructuring.Service;
 
 import com.example.tp3restructuring.model.User;
+import com.example.tp3restructuring.model.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class JwtService {
@@ -17,6 +31,30 @@ public class JwtService {
             SignatureAlgorithm.HS256.getJcaName()
     );
 
+    // Le parser est immuable et thread-safe : construit une seule fois
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(SECRET_KEY)
+            .build();
+
+    /*
+     * Tokens déjà vérifiés, indexés par le SHA-256 du token (on ne garde pas le token lui-même).
+     * Un token modifié a un autre condensé et repasse donc par la vérification complète.
+     * Les entrées expirées sont retirées à la lecture et par un balayage toutes les SWEEP_INTERVAL
+     * (fait par la requête qui tombe sur l'échéance, coût amorti). Cache plein : le token est
+     * vérifié sans être ajouté, sans parcours du cache.
+     */
+    private static final long SWEEP_INTERVAL_NANOS = Duration.ofSeconds(30).toNanos();
+
+    private final Map<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+    // places réservées avant l'ajout : la borne tient même avec des verify concurrents
+    private final AtomicInteger cached = new AtomicInteger();
+    private final AtomicLong nextSweepNanos = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+    private final int cacheMaxSize;
+
+    public JwtService(@Value("${jwt.cache.max-size:10000}") int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
     public String generateToken(User u) {
         return Jwts.builder()
                 .setSubject(u.getId())
@@ -27,21 +65,60 @@ public class JwtService {
                 .compact();
     }
 
-    public String validateAndExtractUserId(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    /**
+     * Vérifie le token et retourne ses claims, en une seule lecture.
+     * Un token déjà vérifié et non expiré est servi depuis le cache, sans recalcul du HMAC.
+     * Lève une JwtException si le token est invalide ou expiré.
+     */
+    public VerifiedToken verify(String token) {
+        Instant now = Instant.now();
+        sweepIfDue(now);
+        String key = digest(token);
+
+        VerifiedToken hit = verified.get(key);
+        if (hit != null) {
+            if (!hit.isExpired(now)) return hit;
+            if (verified.remove(key, hit)) cached.decrementAndGet();
+        }
+
+        VerifiedToken claims = parse(token);
+        if (claims.expiresAt() == null) return claims; // sans exp : jamais mis en cache
+        if (cached.incrementAndGet() > cacheMaxSize) {
+            cached.decrementAndGet();
+        } else if (verified.putIfAbsent(key, claims) != null) {
+            cached.decrementAndGet(); // ajouté entre-temps par une autre requête
+        }
+        return claims;
+    }
+
+    private void sweepIfDue(Instant now) {
+        long next = nextSweepNanos.get();
+        long nanos = System.nanoTime();
+        if (nanos - next < 0 || !nextSweepNanos.compareAndSet(next, nanos + SWEEP_INTERVAL_NANOS)) return;
+        for (Map.Entry<String, VerifiedToken> e : verified.entrySet()) {
+            if (e.getValue().isExpired(now) && verified.remove(e.getKey(), e.getValue())) {
+                cached.decrementAndGet();
+            }
+        }
+    }
+
+    // Vérification complète (signature + exp), sans passer par le cache
+    VerifiedToken parse(String token) {
+        Claims body = parser.parseClaimsJws(token).getBody();
+        Date exp = body.getExpiration();
+        return new VerifiedToken(
+                body.getSubject(),
+                body.get("email", String.class),
+                exp != null ? exp.toInstant() : null
+        );
     }
 
-    public String extractEmail(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("email", String.class);
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
     }
 }
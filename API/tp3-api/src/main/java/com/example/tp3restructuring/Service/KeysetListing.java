@@ -0,0 +1,112 @@
+package com.example.tp3restructuring.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Listes de documents Mongo sans tout charger en mémoire, pour GET /products et GET /users :
+ * - pagination par clé : ?after=&lt;id&gt;&amp;limit=n, documents triés par _id, id du dernier dans l'en-tête X-Next-After
+ *   quand la page est pleine (à repasser en after pour la suivante) ;
+ * - ?stream=true : tableau JSON écrit au fil du curseur Mongo, par lots de STREAM_BATCH documents.
+ * Dans les deux cas la mémoire par requête est bornée, quelle que soit la taille de la collection.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetListing {
+
+    public static final String NEXT_HEADER = "X-Next-After";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    private static final int STREAM_BATCH = 256;
+
+    private final MongoTemplate mongo;
+    private final ObjectMapper mapper;
+
+    // Vrai si la requête demande une page plutôt que la liste complète
+    public static boolean requested(String after, Integer limit) {
+        return after != null || limit != null;
+    }
+
+    /**
+     * Page de limit documents (DEFAULT_LIMIT par défaut) d'id > after, id du dernier dans X-Next-After si la page est pleine.
+     *
+     * @param filter critères propres à la ressource (ex. prix minimum), complétés par after
+     */
+    public <T> ResponseEntity<List<T>> page(Criteria filter, String after, Integer limit,
+                                            Class<T> type, Function<T, String> id) {
+        int size = limit != null ? checkLimit(limit) : DEFAULT_LIMIT;
+        List<T> page = mongo.find(query(filter, after).limit(size), type);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == size) {
+            response.header(NEXT_HEADER, id.apply(page.get(size - 1)));
+        }
+        return response.body(page);
+    }
+
+    /**
+     * Tableau JSON des documents d'id > after (tous si after est absent), écrit au fil du curseur.
+     * Le type de retour doit rester ResponseEntity&lt;StreamingResponseBody&gt; dans le contrôleur :
+     * c'est le type déclaré qui fait choisir à Spring MVC l'écriture asynchrone plutôt que Jackson.
+     */
+    public <T> ResponseEntity<StreamingResponseBody> stream(Criteria filter, String after, Integer limit, Class<T> type) {
+        Query query = query(filter, after);
+        if (limit != null) query.limit(checkLimit(limit));
+        query.cursorBatchSize(STREAM_BATCH);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamArray(query, type));
+    }
+
+    private static int checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit doit être entre 1 et " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    private static Query query(Criteria filter, String after) {
+        // un id mal formé resterait une chaîne : Mongo ne la compare à aucun ObjectId et la page serait vide
+        if (after != null && !ObjectId.isValid(after)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after doit être un id renvoyé dans " + NEXT_HEADER);
+        }
+        Criteria criteria = filter;
+        if (after != null) {
+            criteria = criteria != null ? criteria.and("id").gt(after) : Criteria.where("id").gt(after);
+        }
+        if (criteria == null) criteria = new Criteria();
+        return new Query(criteria).with(Sort.by("id"));
+    }
+
+    private <T> StreamingResponseBody streamArray(Query query, Class<T> type) {
+        // pas de flush après chaque document : le générateur vide son tampon quand il est plein
+        ObjectWriter writer = mapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> {
+            try (JsonGenerator json = mapper.getFactory().createGenerator(out);
+                 Stream<T> documents = mongo.stream(query, type)) {
+                json.writeStartArray();
+                for (T document : (Iterable<T>) documents::iterator) {
+                    writer.writeValue(json, document);
+                }
+                json.writeEndArray();
+            }
+        };
+    }
+}
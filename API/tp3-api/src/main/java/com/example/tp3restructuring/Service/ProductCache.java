@@ -0,0 +1,116 @@
+package com.example.tp3restructuring.Service;
+
+import com.example.tp3restructuring.model.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache en mémoire des lectures de GET /products, devant ProductRepository.
+ *
+ * Une entrée par seuil minPrice (la liste complète est le seuil -∞), expirée après ttl ; au-delà de
+ * maxEntries, l'entrée la plus ancienne est évincée. Une écriture sur un produit de prix p invalide
+ * exactement les seuils ≤ p, les seuls dont le résultat contient ce produit.
+ */
+@Component
+public class ProductCache {
+
+    // Seuil de la liste complète : tout prix est >= -∞
+    static final double ALL = Double.NEGATIVE_INFINITY;
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private record Entry(List<Product> products, long expiresAtNanos) {
+    }
+
+    private final Map<Double, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    // incrémentée à chaque invalidation : un chargement commencé avant n'est pas gardé
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ProductCache(
+            @Value("${products.cache.ttl:30s}") Duration ttl,
+            @Value("${products.cache.max-entries:256}") int maxEntries
+    ) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Produits de prix >= minPrice, depuis le cache ou, à défaut, depuis loader.
+     */
+    public List<Product> get(double minPrice, Supplier<List<Product>> loader) {
+        // NaN ne se compare à aucun prix : jamais invalidable, donc jamais mis en cache
+        if (Double.isNaN(minPrice) || ttlNanos <= 0 || maxEntries <= 0) {
+            misses.increment();
+            return loader.get();
+        }
+
+        long now = System.nanoTime();
+        Entry entry = entries.get(minPrice);
+        if (entry != null) {
+            if (now - entry.expiresAtNanos() < 0) {
+                hits.increment();
+                return entry.products();
+            }
+            if (entries.remove(minPrice, entry)) evictions.increment();
+        }
+        misses.increment();
+
+        long loadedAt = generation.get();
+        List<Product> products = List.copyOf(loader.get());
+        Entry loaded = new Entry(products, now + ttlNanos);
+        if (entries.size() >= maxEntries) evictOldest();
+        entries.put(minPrice, loaded);
+        // invalidation pendant le chargement : le résultat est peut-être déjà périmé
+        if (generation.get() != loadedAt) entries.remove(minPrice, loaded);
+        return products;
+    }
+
+    /**
+     * Invalide les résultats qui contiennent (ou contiendraient) un produit de ce prix.
+     */
+    public void invalidate(double price) {
+        if (Double.isNaN(price)) {
+            invalidateAll();
+            return;
+        }
+        generation.incrementAndGet();
+        entries.keySet().removeIf(minPrice -> minPrice <= price);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private void evictOldest() {
+        Map.Entry<Double, Entry> oldest = null;
+        for (Map.Entry<Double, Entry> e : entries.entrySet()) {
+            if (oldest == null || e.getValue().expiresAtNanos() - oldest.getValue().expiresAtNanos() < 0) {
+                oldest = e;
+            }
+        }
+        if (oldest != null && entries.remove(oldest.getKey(), oldest.getValue())) {
+            evictions.increment();
+        }
+    }
+}
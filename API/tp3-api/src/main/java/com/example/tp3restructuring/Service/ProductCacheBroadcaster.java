@@ -0,0 +1,126 @@
+package com.example.tp3restructuring.Service;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Diffusion des invalidations de {@link ProductCache} entre instances de l'API (products.cache.broadcast.enabled=true).
+ *
+ * Chaque écriture ajoute un message (instance, nom, prix) dans une collection plafonnée ; chaque instance la suit
+ * avec un curseur tailable et, pour les messages des autres, invalide son propre cache et relit le produit
+ * dans son {@link ProductPriceIndex} s'il est actif. Si Mongo est indisponible, un message peut être perdu :
+ * l'entrée concernée reste alors au plus ttl en cache ; l'index, sans ttl, est rechargé dès la reprise du suivi.
+ */
+@Component
+@ConditionalOnProperty(name = "products.cache.broadcast.enabled", havingValue = "true")
+public class ProductCacheBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCacheBroadcaster.class);
+
+    static final String COLLECTION = "product_cache_invalidations";
+    private static final long COLLECTION_BYTES = 1 << 20;
+    private static final long RETRY_MILLIS = 1000;
+
+    private final MongoTemplate mongo;
+    private final ProductCache cache;
+    // absent sauf si products.price-index.enabled=true
+    private final ObjectProvider<ProductPriceIndex> priceIndex;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile MongoCollection<Document> collection;
+    private volatile boolean running;
+    private Thread listener;
+
+    public ProductCacheBroadcaster(MongoTemplate mongo, ProductCache cache, ObjectProvider<ProductPriceIndex> priceIndex) {
+        this.mongo = mongo;
+        this.cache = cache;
+        this.priceIndex = priceIndex;
+    }
+
+    // price null : tout le cache ; name : produit à relire dans l'index des prix
+    public void publish(String name, Double price) {
+        try {
+            collection().insertOne(new Document("instance", instanceId).append("name", name).append("price", price));
+        } catch (RuntimeException e) {
+            log.warn("Invalidation du cache produits non diffusée : {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listener = Thread.ofPlatform().daemon().name("product-cache-broadcast").start(this::listen);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) listener.interrupt();
+    }
+
+    private void listen() {
+        // on ne rejoue pas l'historique : seuls les messages postérieurs au démarrage comptent
+        ObjectId last = new ObjectId();
+        while (running) {
+            try (MongoCursor<Document> cursor = collection()
+                    .find(Filters.gt("_id", last))
+                    .cursorType(CursorType.TailableAwait)
+                    .iterator()) {
+                while (running && cursor.hasNext()) {
+                    Document message = cursor.next();
+                    last = message.getObjectId("_id");
+                    if (instanceId.equals(message.getString("instance"))) continue;
+
+                    Double price = message.getDouble("price");
+                    if (price == null) cache.invalidateAll();
+                    else cache.invalidate(price);
+                    String name = message.getString("name");
+                    if (name != null) priceIndex.ifAvailable(index -> index.refresh(name));
+                }
+            } catch (RuntimeException e) {
+                if (!running) return;
+                log.warn("Suivi des invalidations du cache produits interrompu : {}", e.getMessage());
+                // messages peut-être perdus (collection plafonnée recyclée entre-temps) : on repart à vide
+                cache.invalidateAll();
+                priceIndex.ifAvailable(ProductPriceIndex::reload);
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private MongoCollection<Document> collection() {
+        if (collection != null) return collection;
+        if (!mongo.collectionExists(COLLECTION)) {
+            try {
+                mongo.createCollection(COLLECTION, CollectionOptions.empty().capped().size(COLLECTION_BYTES))
+                        // un curseur tailable sur une collection vide meurt aussitôt
+                        .insertOne(new Document("instance", instanceId).append("price", null));
+            } catch (RuntimeException e) {
+                // créée entre-temps par une autre instance
+                if (!mongo.collectionExists(COLLECTION)) throw e;
+            }
+        }
+        collection = mongo.getCollection(COLLECTION);
+        return collection;
+    }
+}
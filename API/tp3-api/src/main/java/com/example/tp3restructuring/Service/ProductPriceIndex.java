@@ -0,0 +1,148 @@
+package com.example.tp3restructuring.Service;
+
+import com.example.tp3restructuring.model.Product;
+import com.example.tp3restructuring.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Index en mémoire des produits triés par prix (products.price-index.enabled=true) : GET /products?minPrice=
+ * devient une recherche dans une skip list plus la lecture de la fin, sans aller-retour Mongo.
+ *
+ * Chargé en arrière-plan une fois l'application démarrée, puis tenu à jour par chaque écriture de
+ * ProductService via {@link #write}. Les écritures des autres instances arrivent par
+ * {@link ProductCacheBroadcaster} ({@link #refresh}, ou {@link #reload} si des messages ont pu être perdus) :
+ * sans diffusion, l'index ne voit que les écritures de cette instance.
+ * Tant qu'il n'est pas chargé (chargement en cours, Mongo indisponible), {@link #isReady()} est faux et la
+ * requête Mongo reste utilisée. Les résultats sont triés par prix croissant.
+ */
+@Component
+@ConditionalOnProperty(name = "products.price-index.enabled", havingValue = "true")
+public class ProductPriceIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductPriceIndex.class);
+
+    // Clé (prix, id) : plusieurs produits peuvent avoir le même prix
+    private record Key(double price, String id) {
+    }
+
+    private static final Comparator<Key> ORDER = Comparator.comparingDouble(Key::price)
+            .thenComparing(Key::id);
+
+    // verrous par nom de produit, cf. write
+    private static final int STRIPES = 64;
+
+    private final ProductRepository repo;
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final ConcurrentSkipListMap<Key, Product> byPrice = new ConcurrentSkipListMap<>(ORDER);
+    // dernière version indexée de chaque produit, pour retrouver sa clé à la mise à jour ; sous le verrou
+    private final Map<String, Key> keys = new HashMap<>();
+    private volatile boolean ready;
+
+    public ProductPriceIndex(ProductRepository repo) {
+        this.repo = repo;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Parcours complet de la collection : hors du thread de démarrage, les requêtes passent par Mongo d'ici là
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread.ofVirtual().name("product-price-index").start(this::load);
+    }
+
+    // Rechargement complet en arrière-plan ; les requêtes passent par Mongo d'ici là
+    public void reload() {
+        loadInBackground();
+    }
+
+    /**
+     * Relit dans Mongo les produits de ce nom, modifiés par une autre instance, sous le même verrou
+     * que {@link #write} : l'état relu est celui de la base, quel que soit l'ordre des messages.
+     */
+    public void refresh(String name) {
+        write(name, () -> repo.findAllByName(name), products -> replaceByName(name, products));
+    }
+
+    /**
+     * Écriture Mongo puis mise à jour de l'index, sous le verrou du nom de produit : deux écritures
+     * concurrentes sur un même produit arrivent dans l'index dans l'ordre où Mongo les a appliquées.
+     */
+    public <T> T write(String name, Supplier<T> dbWrite, Consumer<T> apply) {
+        Lock lock = stripes[Math.floorMod(Objects.hashCode(name), STRIPES)];
+        lock.lock();
+        try {
+            T result = dbWrite.get();
+            apply.accept(result);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    synchronized void load() {
+        ready = false;
+        try {
+            byPrice.clear();
+            keys.clear();
+            // sous le verrou : les écritures attendent la fin du chargement, aucune ne passe entre lecture et indexation
+            for (Product p : repo.findAll()) {
+                put(p);
+            }
+            ready = true;
+            log.info("Index des prix chargé : {} produits", keys.size());
+        } catch (RuntimeException e) {
+            log.warn("Index des prix non chargé, requêtes minPrice servies par Mongo : {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<Product> findByMinPrice(double minPrice) {
+        // "" précède tout id : premier produit de prix >= minPrice
+        NavigableMap<Key, Product> tail = byPrice.tailMap(new Key(minPrice + 0.0, ""), true);
+        return new ArrayList<>(tail.values());
+    }
+
+    public synchronized void put(Product p) {
+        if (p.getId() == null) return;
+        Key key = new Key(p.getPrice() + 0.0, p.getId()); // + 0.0 : -0.0 indexé comme 0.0
+        Key previous = keys.put(p.getId(), key);
+        if (previous != null) byPrice.remove(previous);
+        byPrice.put(key, p);
+    }
+
+    private synchronized void replaceByName(String name, List<Product> products) {
+        removeByName(name);
+        products.forEach(this::put);
+    }
+
+    // Miroir de deleteByName : tous les produits de ce nom
+    public synchronized void removeByName(String name) {
+        byPrice.values().removeIf(p -> {
+            if (!name.equals(p.getName())) return false;
+            keys.remove(p.getId());
+            return true;
+        });
+    }
+}
@@ -5,18 +5,27 @@ import com.example.tp3restructuring.exceptions.ProductNotFoundException;
 import com.example.tp3restructuring.model.Product;
 import com.example.tp3restructuring.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
     private final ProductRepository repo;
+    private final ProductCache cache;
+    // absent sauf si products.cache.broadcast.enabled=true
+    private final ObjectProvider<ProductCacheBroadcaster> broadcaster;
+    // absent sauf si products.price-index.enabled=true
+    private final ObjectProvider<ProductPriceIndex> priceIndex;
 
     public List<Product> list() {
-        return repo.findAll();
+        return cache.get(ProductCache.ALL, repo::findAll);
     }
 
     public Product get(String name) {
@@ -24,27 +33,64 @@ public class ProductService {
     }
 
     public Product create(Product p) {
-        if (p.getId() != null && repo.existsById(p.getId())) {
-            throw new ProductAlreadyExistsException(p.getId());
-        }
-        return repo.save(p);
+        Product saved = write(p.getName(), () -> {
+            try {
+                // insert échoue sur un _id existant : pas de existsById préalable
+                return repo.insert(p);
+            } catch (DuplicateKeyException e) {
+                throw new ProductAlreadyExistsException(p.getId());
+            }
+        }, ProductPriceIndex::put);
+        invalidate(saved.getName(), saved.getPrice());
+        return saved;
     }
 
     public List<Product> findByMinPrice(Double minPrice) {
         if (minPrice == null) {
-            return repo.findAll();
+            return list();
+        }
+        ProductPriceIndex index = priceIndex.getIfAvailable();
+        if (index != null && index.isReady() && !minPrice.isNaN()) {
+            return index.findByMinPrice(minPrice);
         }
-        return repo.findByPriceGreaterThanEqual(minPrice);
+        return cache.get(minPrice, () -> repo.findByPriceGreaterThanEqual(minPrice));
     }
 
     public Product update(String name, Product p) {
-        if (!repo.existsByName(name)) throw new ProductNotFoundException(name);
         p.setName(name);
-        return repo.save(p);
+        Product old = write(name, () -> {
+            Product previous = repo.replaceByName(name, p).orElseThrow(() -> new ProductNotFoundException(name));
+            p.setId(previous.getId());
+            return previous;
+        }, (index, previous) -> index.put(p));
+        // l'ancien prix retire le produit de certains seuils, le nouveau l'ajoute à d'autres
+        invalidate(name, Math.max(old.getPrice(), p.getPrice()));
+        return p;
     }
 
     public void delete(String name) {
-        if (!repo.existsByName(name)) throw new ProductNotFoundException(name);
-        repo.deleteByName(name);
+        // tous les produits de ce nom, en un aller-retour ; leurs prix ne sont pas relus
+        write(name, () -> {
+            if (repo.deleteByName(name) == 0) throw new ProductNotFoundException(name);
+            return name;
+        }, ProductPriceIndex::removeByName);
+        cache.invalidateAll();
+        broadcaster.ifAvailable(b -> b.publish(name, null));
+    }
+
+    public ProductCache.Stats cacheStats() {
+        return cache.stats();
+    }
+
+    // Écriture Mongo, puis index des prix s'il est actif, dans le même ordre pour un même produit
+    private <T> T write(String name, Supplier<T> dbWrite, BiConsumer<ProductPriceIndex, T> indexUpdate) {
+        ProductPriceIndex index = priceIndex.getIfAvailable();
+        if (index == null) return dbWrite.get();
+        return index.write(name, dbWrite, result -> indexUpdate.accept(index, result));
+    }
+
+    private void invalidate(String name, double price) {
+        cache.invalidate(price);
+        broadcaster.ifAvailable(b -> b.publish(name, price));
     }
 }
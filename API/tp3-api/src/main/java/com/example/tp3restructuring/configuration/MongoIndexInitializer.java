@@ -0,0 +1,56 @@
+package com.example.tp3restructuring.configuration;
+
+import com.example.tp3restructuring.model.Product;
+import com.example.tp3restructuring.model.User;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Crée au démarrage les index déclarés par @Indexed sur les documents (products.name, products.price,
+ * users.email). L'auto-index-creation de Spring Data est désactivée par défaut et ferait échouer le
+ * démarrage sans Mongo : ici la création se fait en arrière-plan, un échec est seulement journalisé.
+ */
+@Component
+@RequiredArgsConstructor
+public class MongoIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    private static final List<Class<?>> DOCUMENTS = List.of(Product.class, User.class);
+
+    private final MongoTemplate mongo;
+    private final MongoMappingContext mappingContext;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        Thread.ofVirtual().name("mongo-indexes").start(() -> {
+            IndexResolver resolver = IndexResolver.create(mappingContext);
+            for (Class<?> type : DOCUMENTS) {
+                IndexOperations indexes = mongo.indexOps(type);
+                for (IndexDefinition index : resolver.resolveIndexFor(type)) {
+                    try {
+                        // sans effet si l'index existe déjà
+                        indexes.createIndex(index);
+                    } catch (DataAccessResourceFailureException e) {
+                        log.warn("Mongo injoignable, index non créés : {}", e.getMessage());
+                        return;
+                    } catch (RuntimeException e) {
+                        log.warn("Index {} sur {} non créé : {}", index.getIndexKeys(), type.getSimpleName(), e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+}
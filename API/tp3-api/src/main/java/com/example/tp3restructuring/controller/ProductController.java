@@ -1,12 +1,17 @@
 package com.example.tp3restructuring.controller;
 
+import com.example.tp3restructuring.Service.KeysetListing;
+import com.example.tp3restructuring.Service.ProductCache;
 import com.example.tp3restructuring.Service.ProductService;
 import com.example.tp3restructuring.exceptions.ProductAlreadyExistsException;
 import com.example.tp3restructuring.exceptions.ProductNotFoundException;
 import com.example.tp3restructuring.model.Product;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -16,12 +21,35 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService service;
+    private final KeysetListing listing;
 
+    // Sans after/limit : liste complète (cache, index des prix) ; sinon page par clé (cf. KeysetListing)
     @GetMapping()
-    public List<Product> getProducts(
-            @RequestParam(required = false) Double minPrice
+    public ResponseEntity<List<Product>> getProducts(
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
     ) {
-        return service.findByMinPrice(minPrice);
+        if (!KeysetListing.requested(after, limit)) {
+            return ResponseEntity.ok(service.findByMinPrice(minPrice));
+        }
+        return listing.page(minPriceFilter(minPrice), after, limit, Product.class, Product::getId);
+    }
+
+    // ?stream=true : tableau JSON écrit au fil du curseur Mongo
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamProducts(
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
+    ) {
+        return listing.stream(minPriceFilter(minPrice), after, limit, Product.class);
+    }
+
+    // compteurs du cache de GET /products (hits, misses, évictions)
+    @GetMapping("/cache/stats")
+    public ProductCache.Stats cacheStats() {
+        return service.cacheStats();
     }
 
     @GetMapping("/{name}")
@@ -46,6 +74,10 @@ public class ProductController {
         service.delete(name);
     }
 
+    private static Criteria minPriceFilter(Double minPrice) {
+        return minPrice != null ? Criteria.where("price").gte(minPrice) : null;
+    }
+
     @ResponseStatus(HttpStatus.NOT_FOUND)
     @ExceptionHandler(ProductNotFoundException.class)
     public String handleNotFound(ProductNotFoundException ex) {
@@ -1,12 +1,15 @@
 package com.example.tp3restructuring.controller;
 
+import com.example.tp3restructuring.Service.KeysetListing;
 import com.example.tp3restructuring.model.User;
 import com.example.tp3restructuring.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -16,10 +19,27 @@ import java.util.List;
 public class UserController {
 
     private final UserRepository repo;
+    private final KeysetListing listing;
 
+    // Sans after/limit : liste complète ; sinon page par clé (cf. KeysetListing)
     @GetMapping
-    public List<User> getAll() {
-        return repo.findAll();
+    public ResponseEntity<List<User>> getAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
+    ) {
+        if (!KeysetListing.requested(after, limit)) {
+            return ResponseEntity.ok(repo.findAll());
+        }
+        return listing.page(null, after, limit, User.class, User::getId);
+    }
+
+    // ?stream=true : tableau JSON écrit au fil du curseur Mongo
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAll(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
+    ) {
+        return listing.stream(null, after, limit, User.class);
     }
 
     @GetMapping("/{id}")
@@ -2,6 +2,7 @@ package com.example.tp3restructuring.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -11,7 +12,9 @@ import java.time.LocalDate;
 public class Product {
     @Id
     private String id;
+    @Indexed
     private String name;
+    @Indexed
     private double price;
     private LocalDate expirationDate;
 }
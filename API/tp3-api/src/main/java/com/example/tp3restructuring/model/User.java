@@ -2,6 +2,7 @@ package com.example.tp3restructuring.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 @Data
 @Document(collection = "users")
@@ -10,6 +11,7 @@ public class User {
     private String id;
     private String name;
     private int age;
+    @Indexed
     private String email;
     private String password;
 }
@@ -0,0 +1,13 @@
+package com.example.tp3restructuring.model;
+
+import java.time.Instant;
+
+/**
+ * Contenu d'un JWT dont la signature a été vérifiée : identifiant (sub), email et expiration (exp).
+ */
+public record VerifiedToken(String userId, String email, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
@@ -6,9 +6,10 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 import java.util.Optional;
 
-public interface ProductRepository extends MongoRepository<Product, String> {
-    boolean existsByName(String name);
-    void deleteByName(String name);
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
     Optional<Product> findByName(String name);
+    List<Product> findAllByName(String name);
+    // Suppression dérivée à retour long : un seul remove, nombre de documents supprimés
+    long deleteByName(String name);
     List<Product> findByPriceGreaterThanEqual(double price);
 }
@@ -0,0 +1,15 @@
+package com.example.tp3restructuring.repository;
+
+import com.example.tp3restructuring.model.Product;
+
+import java.util.Optional;
+
+/**
+ * Mise à jour en une seule opération Mongo (findAndReplace) : pas de lecture préalable pour vérifier
+ * l'existence, et la version précédente du produit est retournée.
+ */
+public interface ProductRepositoryCustom {
+
+    // Remplace le produit de ce nom en gardant son _id ; vide si aucun produit ne porte ce nom
+    Optional<Product> replaceByName(String name, Product replacement);
+}
@@ -0,0 +1,26 @@
+package com.example.tp3restructuring.repository;
+
+import com.example.tp3restructuring.model.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private final MongoTemplate mongo;
+
+    @Override
+    public Optional<Product> replaceByName(String name, Product replacement) {
+        // _id est immuable : un id différent dans le corps ferait rejeter le remplacement par Mongo
+        replacement.setId(null);
+        return Optional.ofNullable(mongo.findAndReplace(byName(name), replacement));
+    }
+
+    private static Query byName(String name) {
+        return new Query(Criteria.where("name").is(name));
+    }
+}
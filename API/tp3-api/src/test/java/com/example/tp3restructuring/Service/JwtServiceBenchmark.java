@@ -0,0 +1,83 @@
+package com.example.tp3restructuring.Service;
+
+import com.example.tp3restructuring.model.User;
+import com.example.tp3restructuring.model.VerifiedToken;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût de la vérification du JWT par requête authentifiée (JwtFilter) :
+ * - twoParses : ancien chemin, deux parsers construits et deux HMAC (userId puis email) ;
+ * - singleParse : un seul parse avec le parser partagé, sans cache ;
+ * - cached : verify() sur un token déjà vérifié (condensé SHA-256 + lecture du cache).
+ *
+ * Lancement (JMH relance une JVM, d'où exec:exec plutôt qu'exec:java) :
+ *   mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *       -Dexec.args="-cp %classpath org.openjdk.jmh.Main JwtServiceBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    // clé propre au benchmark pour l'ancien chemin : même algorithme, même taille que celle du service
+    private final SecretKey legacyKey = Keys.hmacShaKeyFor(
+            "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef".getBytes());
+
+    private JwtService jwtService;
+    private String token;
+    private String legacyToken;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(10_000);
+        User user = new User();
+        user.setId("6566f0c2a1b2c3d4e5f60718");
+        user.setEmail("alice@example.com");
+        token = jwtService.generateToken(user);
+        jwtService.verify(token);
+        legacyToken = Jwts.builder()
+                .setSubject(user.getId())
+                .claim("email", user.getEmail())
+                .setExpiration(new Date(System.currentTimeMillis() + 86400000))
+                .signWith(legacyKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public void twoParses(Blackhole bh) {
+        bh.consume(Jwts.parserBuilder().setSigningKey(legacyKey).build()
+                .parseClaimsJws(legacyToken).getBody().getSubject());
+        bh.consume(Jwts.parserBuilder().setSigningKey(legacyKey).build()
+                .parseClaimsJws(legacyToken).getBody().get("email", String.class));
+    }
+
+    @Benchmark
+    public VerifiedToken singleParse() {
+        return jwtService.parse(token);
+    }
+
+    @Benchmark
+    public VerifiedToken cached() {
+        return jwtService.verify(token);
+    }
+}
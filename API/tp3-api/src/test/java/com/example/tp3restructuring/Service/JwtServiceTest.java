@@ -0,0 +1,54 @@
+package com.example.tp3restructuring.Service;
+
+import com.example.tp3restructuring.model.User;
+import com.example.tp3restructuring.model.VerifiedToken;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtServiceTest {
+
+    @Test
+    void verifyReturnsClaimsAndServesRepeatsFromCache() {
+        JwtService jwt = new JwtService(10);
+        String token = jwt.generateToken(user("u1", "alice@example.com"));
+
+        VerifiedToken first = jwt.verify(token);
+        assertThat(first.userId()).isEqualTo("u1");
+        assertThat(first.email()).isEqualTo("alice@example.com");
+        assertThat(jwt.verify(token)).isSameAs(first);
+    }
+
+    @Test
+    void tamperedTokenIsRejectedEvenAfterOriginalWasCached() {
+        JwtService jwt = new JwtService(10);
+        String token = jwt.generateToken(user("u1", "alice@example.com"));
+        jwt.verify(token);
+
+        String tampered = token.substring(0, token.length() - 2)
+                + (token.endsWith("AA") ? "BB" : "AA");
+        assertThatThrownBy(() -> jwt.verify(tampered)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void fullCacheStillVerifiesWithoutCaching() {
+        JwtService jwt = new JwtService(1);
+        String a = jwt.generateToken(user("a", "a@example.com"));
+        String b = jwt.generateToken(user("b", "b@example.com"));
+
+        VerifiedToken cachedA = jwt.verify(a);
+        VerifiedToken firstB = jwt.verify(b);
+        assertThat(firstB.userId()).isEqualTo("b");
+        assertThat(jwt.verify(b)).isNotSameAs(firstB);
+        assertThat(jwt.verify(a)).isSameAs(cachedA);
+    }
+
+    private static User user(String id, String email) {
+        User u = new User();
+        u.setId(id);
+        u.setEmail(email);
+        return u;
+    }
+}
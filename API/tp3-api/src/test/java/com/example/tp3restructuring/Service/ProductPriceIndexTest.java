@@ -0,0 +1,104 @@
+package com.example.tp3restructuring.Service;
+
+import com.example.tp3restructuring.model.Product;
+import com.example.tp3restructuring.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductPriceIndexTest {
+
+    @Test
+    void loadThenAnswersMinPriceSortedByPrice() {
+        ProductPriceIndex index = loaded(product("1", "a", 5), product("2", "b", 10), product("3", "c", 1));
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.findByMinPrice(5)).extracting(Product::getName).containsExactly("a", "b");
+        assertThat(index.findByMinPrice(11)).isEmpty();
+    }
+
+    @Test
+    void concurrentWritesOnSameProductReachIndexInDatabaseOrder() throws Exception {
+        ProductPriceIndex index = loaded(product("1", "a", 5));
+        // "base" : dernière écriture appliquée côté Mongo
+        AtomicReference<Product> database = new AtomicReference<>();
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+
+        Thread first = Thread.ofPlatform().start(() -> index.write("a", () -> {
+            firstWriteStarted.countDown();
+            await(releaseFirst);
+            Product p = product("1", "a", 20);
+            database.set(p);
+            return p;
+        }, index::put));
+        firstWriteStarted.await();
+
+        Thread second = Thread.ofPlatform().start(() -> index.write("a", () -> {
+            Product p = product("1", "a", 30);
+            database.set(p);
+            return p;
+        }, index::put));
+        Thread.sleep(50); // la seconde écriture attend le verrou du nom
+        releaseFirst.countDown();
+        first.join();
+        second.join();
+
+        assertThat(index.findByMinPrice(0)).extracting(Product::getPrice)
+                .containsExactly(database.get().getPrice());
+    }
+
+    @Test
+    void removeByNameDropsEveryProductWithThatName() {
+        ProductPriceIndex index = loaded(product("1", "a", 5), product("2", "a", 7), product("3", "b", 9));
+
+        index.removeByName("a");
+
+        assertThat(index.findByMinPrice(0)).extracting(Product::getId).containsExactly("3");
+    }
+
+    @Test
+    void refreshReplacesProductsOfThatNameWithDatabaseState() {
+        ProductRepository repo = mock(ProductRepository.class);
+        ProductPriceIndex index = loaded(repo, product("1", "a", 5), product("2", "a", 7), product("3", "b", 9));
+        // écriture d'une autre instance : "1" repassé à 20, "2" supprimé
+        when(repo.findAllByName("a")).thenReturn(List.of(product("1", "a", 20)));
+
+        index.refresh("a");
+
+        assertThat(index.findByMinPrice(0)).extracting(Product::getId).containsExactly("3", "1");
+    }
+
+    private static ProductPriceIndex loaded(Product... products) {
+        return loaded(mock(ProductRepository.class), products);
+    }
+
+    private static ProductPriceIndex loaded(ProductRepository repo, Product... products) {
+        when(repo.findAll()).thenReturn(List.of(products));
+        ProductPriceIndex index = new ProductPriceIndex(repo);
+        index.load();
+        return index;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Product product(String id, String name, double price) {
+        Product p = new Product();
+        p.setId(id);
+        p.setName(name);
+        p.setPrice(price);
+        return p;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.tp3restructuring.controller;
+
+import com.example.tp3restructuring.Service.JwtService;
+import com.example.tp3restructuring.Service.KeysetListing;
+import com.example.tp3restructuring.Service.ProductService;
+import com.example.tp3restructuring.model.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Listes de GET /products sans Mongo : MongoTemplate est simulé, KeysetListing est le vrai
+@WebMvcTest(ProductController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import(KeysetListing.class)
+class ProductControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private MongoTemplate mongo;
+    @MockitoBean
+    private ProductService service;
+    @MockitoBean
+    private JwtService jwtService;
+
+    @Test
+    void streamWritesJsonArrayFromCursor() throws Exception {
+        when(mongo.stream(any(Query.class), eq(Product.class)))
+                .thenReturn(Stream.of(product("1", "pomme", 2.0), product("2", "poire", 3.5)));
+
+        MvcResult started = mvc.perform(get("/products").param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        [{"id":"1","name":"pomme","price":2.0,"expirationDate":null},
+                         {"id":"2","name":"poire","price":3.5,"expirationDate":null}]
+                        """, true));
+    }
+
+    @Test
+    void fullPageSetsNextCursorHeader() throws Exception {
+        when(mongo.find(any(Query.class), eq(Product.class)))
+                .thenReturn(List.of(product("1", "pomme", 2.0), product("2", "poire", 3.5)));
+
+        mvc.perform(get("/products").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetListing.NEXT_HEADER, "2"))
+                .andExpect(content().json("""
+                        [{"id":"1"},{"id":"2"}]
+                        """));
+    }
+
+    @Test
+    void lastPageHasNoNextCursor() throws Exception {
+        when(mongo.find(any(Query.class), eq(Product.class)))
+                .thenReturn(List.of(product("3", "kiwi", 1.0)));
+
+        mvc.perform(get("/products").param("after", "6943f824530f36f34dce5f47").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(KeysetListing.NEXT_HEADER));
+    }
+
+    @Test
+    void malformedCursorIsRejected() throws Exception {
+        // sinon Mongo compare une chaîne à des ObjectId : page vide, le client croirait la liste finie
+        mvc.perform(get("/products").param("after", "6943f824530f36f34dce5f4").param("limit", "2"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/products").param("after", "oops").param("stream", "true"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static Product product(String id, String name, double price) {
+        Product p = new Product();
+        p.setId(id);
+        p.setName(name);
+        p.setPrice(price);
+        return p;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.tp3restructuring.repository;
+
+import com.example.tp3restructuring.model.Product;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductRepositoryCustomImplTest {
+
+    @Test
+    void replaceByNameNeverSendsClientId() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        Product stored = new Product();
+        stored.setId("stored-id");
+        when(mongo.findAndReplace(any(Query.class), any(Product.class))).thenReturn(stored);
+
+        Product body = new Product();
+        body.setId("client-id");
+        body.setName("pomme");
+
+        assertThat(new ProductRepositoryCustomImpl(mongo).replaceByName("pomme", body)).contains(stored);
+
+        ArgumentCaptor<Product> sent = ArgumentCaptor.forClass(Product.class);
+        verify(mongo).findAndReplace(any(Query.class), sent.capture());
+        assertThat(sent.getValue().getId()).isNull();
+    }
+}
@@ -1,11 +1,50 @@
 package org.example;
 
+import org.example.daemon.ProfileDaemon;
+import org.example.http.ApiScenarioRequest;
+import org.example.http.ApiWorkloadRunner;
+import org.example.http.CapacitySearch;
+import org.example.http.DistributedWorkload;
+import org.example.http.ScenarioFile;
+import org.example.http.TokenCache;
+import org.example.http.WorkloadReport;
 import org.example.ui.UserProfileToolFrame;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
-    public static void main(String[] args) {
+
+    private static final int DEFAULT_DAEMON_PORT = 8081;
+    private static final String DEFAULT_BASE_URL = "http://localhost:8080/api";
+
+    public static void main(String[] args) throws IOException {
+        // Mode sans interface : --daemon [--port=8081]
+        if (Arrays.asList(args).contains("--daemon")) {
+            runDaemon(args);
+            return;
+        }
+        // Mode sans interface : --scenario=<fichier .jsonl|.yaml> [--base-url=...] [--max-in-flight=64]
+        //                       [--http=1.1|2] [--connections=1] [--report-dir=...]
+        // avec --capacity : recherche du débit max sous SLO, voir runCapacitySearch ;
+        // avec --workers=N : scénario réparti sur N JVM, voir runDistributed
+        if (option(args, "--scenario=", null) != null) {
+            if (option(args, "--worker=", null) != null) {
+                System.exit(runWorker(args));
+            }
+            if (option(args, "--workers=", null) != null) {
+                System.exit(runDistributed(args));
+            }
+            System.exit(Arrays.asList(args).contains("--capacity") ? runCapacitySearch(args) : runScenario(args));
+        }
+
         try {
             for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
                 if ("Nimbus".equals(info.getName())) {
@@ -21,5 +60,129 @@ public class Main {
             frame.setVisible(true);
         });
     }
-}
 
+    // Valeur de --nom=valeur, ou defaultValue si l'option est absente
+    private static String option(String[] args, String prefix, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void runDaemon(String[] args) throws IOException {
+        int port = Integer.parseInt(option(args, "--port=", String.valueOf(DEFAULT_DAEMON_PORT)));
+
+        ProfileDaemon daemon = new UserProfileAggregatorService().startDaemon(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException ignored) {
+            }
+        }));
+        System.out.println("Démon de profils démarré sur le port " + daemon.port()
+                + " (" + daemon.index().size() + " profils chargés)");
+    }
+
+    // Exécuteur configuré par --base-url, --max-in-flight, --http et --connections
+    private static ApiWorkloadRunner newRunner(String[] args) {
+        String baseUrl = option(args, "--base-url=", DEFAULT_BASE_URL);
+        int maxInFlight = Integer.parseInt(option(args, "--max-in-flight=",
+                String.valueOf(ApiWorkloadRunner.DEFAULT_MAX_IN_FLIGHT)));
+        HttpClient.Version version = option(args, "--http=", "1.1").equals("2")
+                ? HttpClient.Version.HTTP_2
+                : HttpClient.Version.HTTP_1_1;
+        int connections = Integer.parseInt(option(args, "--connections=", "1"));
+        return new ApiWorkloadRunner(baseUrl, maxInFlight, new TokenCache(), version, connections);
+    }
+
+    private static Path reportDir(String[] args) {
+        return Paths.get(option(args, "--report-dir=", WorkloadReport.DEFAULT_DIR.toString()));
+    }
+
+    // Code de sortie : 0 si le scénario est allé au bout, 1 sinon
+    private static int runScenario(String[] args) throws IOException {
+        Path scenario = Paths.get(option(args, "--scenario=", null));
+        ApiWorkloadRunner runner = newRunner(args);
+        WorkloadReport report;
+        try (ScenarioFile requests = ScenarioFile.open(scenario)) {
+            report = runner.runScenario(requests);
+        } catch (Exception e) {
+            System.err.println("Échec du scénario " + scenario + " : " + e.getMessage());
+            return 1;
+        }
+
+        System.out.print(report);
+        System.out.println("Mesures écrites dans " + report.writeTo(reportDir(args)).getParent());
+        return 0;
+    }
+
+    /**
+     * Coordinateur : lance N workers (même classpath) qui se partagent les utilisateurs du scénario et
+     * fusionne leurs mesures. --max-in-flight, --http et --connections s'appliquent à chaque worker.
+     */
+    private static int runDistributed(String[] args) throws IOException {
+        int workers = Integer.parseInt(option(args, "--workers=", null));
+        List<String> workerArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--workers=") && !arg.startsWith("--report-dir=")) {
+                workerArgs.add(arg);
+            }
+        }
+
+        WorkloadReport report;
+        try {
+            report = new DistributedWorkload(Main.class, workers, workerArgs).run();
+        } catch (Exception e) {
+            System.err.println("Échec du scénario réparti : " + e.getMessage());
+            return 1;
+        }
+
+        System.out.print(report);
+        System.out.println("Mesures de " + workers + " workers écrites dans " + report.writeTo(reportDir(args)).getParent());
+        return 0;
+    }
+
+    // Worker lancé par runDistributed : --worker=<partition>/<nombre de workers>
+    private static int runWorker(String[] args) {
+        String[] partition = option(args, "--worker=", null).split("/");
+        return DistributedWorkload.runWorker(newRunner(args), Paths.get(option(args, "--scenario=", null)),
+                Integer.parseInt(partition[0]), Integer.parseInt(partition[1]));
+    }
+
+    /**
+     * Paliers de modèle ouvert sur le mélange du scénario : [--slo-p99-ms=500] [--slo-errors=0.01]
+     * [--start-rate=10] [--growth=2] [--max-rate=10000] [--step-seconds=10] [--refinements=4].
+     * Code de sortie : 0 si un coude a été trouvé, 1 sinon.
+     */
+    private static int runCapacitySearch(String[] args) throws IOException {
+        Path scenario = Paths.get(option(args, "--scenario=", null));
+        CapacitySearch.Slo slo = new CapacitySearch.Slo(
+                Double.parseDouble(option(args, "--slo-p99-ms=", "500")),
+                Double.parseDouble(option(args, "--slo-errors=", "0.01")));
+        CapacitySearch search = new CapacitySearch(newRunner(args), slo,
+                Duration.ofSeconds(Long.parseLong(option(args, "--step-seconds=", "10"))));
+
+        CapacitySearch.Result result;
+        try (ScenarioFile file = ScenarioFile.open(scenario)) {
+            // le mélange utilisateurs / opérations doit être en mémoire pour être tiré au sort
+            List<ApiScenarioRequest> requests = new ArrayList<>();
+            file.forEachRemaining(requests::add);
+            result = search.search(requests,
+                    Double.parseDouble(option(args, "--start-rate=", "10")),
+                    Double.parseDouble(option(args, "--growth=", "2")),
+                    Double.parseDouble(option(args, "--max-rate=", "10000")),
+                    Integer.parseInt(option(args, "--refinements=", "4")));
+        } catch (Exception e) {
+            System.err.println("Échec de la recherche de capacité (" + scenario + ") : " + e.getMessage());
+            return 1;
+        }
+
+        Path curve = reportDir(args).resolve("capacity-curve.csv");
+        result.writeCsv(curve);
+        System.out.print(result);
+        System.out.println("Courbe débit / latence écrite dans " + curve);
+        return result.knee() != null ? 0 : 1;
+    }
+}
@@ -1,12 +1,16 @@
 package org.example;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.aggregation.*;
+import org.example.aggregation.rules.ProfileRules;
+import org.example.aggregation.rules.RuleSet;
+import org.example.daemon.ProfileDaemon;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
+import java.time.Instant;
 import java.util.*;
 
 public class UserProfileAggregatorService {
@@ -15,150 +19,139 @@ public class UserProfileAggregatorService {
     private static final Path LOG_FILE =
             Paths.get("../logs/APIGenerated/api.log").toAbsolutePath().normalize();
 
-    private static final Path OUT_FILE =
-            Paths.get("../logs/Aggregated/profiles.json").toAbsolutePath().normalize();
+    // Un jeu de règles "output" -> <output>.json, issu du snapshot binaire en colonnes <output>.bin
+    private static final Path OUT_DIR =
+            Paths.get("../logs/Aggregated").toAbsolutePath().normalize();
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // Règles de profilage ; règles par défaut (classpath) si le fichier est absent
+    private static final Path RULES_FILE =
+            Paths.get("profile-rules.json").toAbsolutePath().normalize();
 
-    public String aggregateAndWriteProfiles() throws IOException {
-        Map<String, UserStats> statsByEmail = aggregate(LOG_FILE);
-        Map<String, Object> profilesJson = buildProfilesJson(statsByEmail);
+    private static final Path WINDOWED_OUT_FILE =
+            Paths.get("../logs/Aggregated/profiles-windowed.json").toAbsolutePath().normalize();
 
-        Files.createDirectories(OUT_FILE.getParent());
+    // api.log et ses archives api-yyyy-MM-dd.log[.gz]
+    private static final Path LOG_DIR = LOG_FILE.getParent();
 
-        String json = MAPPER.writerWithDefaultPrettyPrinter()
-                .writeValueAsString(profilesJson);
+    // État agrégé + checkpoint du mode incrémental, à côté de profiles.json
+    private static final Path STATE_FILE =
+            Paths.get("../logs/Aggregated/profiles.state.json").toAbsolutePath().normalize();
 
-        try (BufferedWriter writer = Files.newBufferedWriter(OUT_FILE)) {
-            writer.write(json);
-        }
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
-        return json;
+    public Path aggregateAndWriteProfiles() throws IOException {
+        return aggregateAndWriteProfiles(AggregationMode.PARALLEL);
     }
 
-    private Map<String, UserStats> aggregate(Path logFile) throws IOException {
-        Map<String, UserStats> statsByEmail = new HashMap<>();
-
-        try (BufferedReader reader = Files.newBufferedReader(logFile)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-
-                JsonNode node = MAPPER.readTree(line);
-
-                // email
-                String email = extractEmail(node);
-
-                // type d'op (READ / WRITE) et resource (products, auth, etc.)
-                String opType = getText(node, "opType");
-                String resource = getText(node, "resource"); // <-- en accord avec tes logs
-
-                // param minPrice
-                Double minPrice = parseDoubleOrNull(getText(node, "query.minPrice"));
-
-                if (email == null || opType == null) {
-                    continue;
-                }
-
-                UserStats stats = statsByEmail.computeIfAbsent(email, UserStats::new);
-
-                if ("READ".equalsIgnoreCase(opType)) {
-                    stats.reads++;
-                } else if ("WRITE".equalsIgnoreCase(opType)) {
-                    stats.writes++;
-                }
-
-                if (isExpensiveSearch(resource, minPrice)) {
-                    stats.expensiveSearches++;
-                }
-            }
-        }
-
-        return statsByEmail;
+    /**
+     * Agrège api.log selon le mode et écrit un fichier de profils par jeu de règles.
+     * Retourne le fichier du premier jeu de règles (profiles.json avec les règles par défaut).
+     */
+    public Path aggregateAndWriteProfiles(AggregationMode mode) throws IOException {
+        ProfileRules rules = ProfileRules.loadOrDefaults(RULES_FILE);
+        ProfileStore store = switch (mode) {
+            case SEQUENTIAL -> aggregate(LOG_FILE, rules);
+            case PARALLEL -> new ParallelLogAggregator(rules).aggregate(LOG_FILE);
+            case INCREMENTAL -> new IncrementalLogAggregator(STATE_FILE, rules).aggregate(LOG_FILE);
+            case ARCHIVED -> new MultiFileLogAggregator(rules).aggregate(LOG_DIR, null, null);
+        };
+        return writeProfiles(store, rules);
     }
 
-    private boolean isExpensiveSearch(String resource, Double minPrice) {
-        if (resource == null) return false;
+    /**
+     * Agrège api.log et ses archives sur la période [from, to) ; une borne null n'est pas appliquée.
+     */
+    public Path aggregateAndWriteProfiles(Instant from, Instant to) throws IOException {
+        ProfileRules rules = ProfileRules.loadOrDefaults(RULES_FILE);
+        return writeProfiles(new MultiFileLogAggregator(rules).aggregate(LOG_DIR, from, to), rules);
+    }
 
-        if ("products".equalsIgnoreCase(resource)) {
-            return minPrice != null && minPrice >= 50.0;
-        }
-        return false;
+    /**
+     * Démarre le mode démon : suivi continu de api.log et API HTTP de lecture sur le port donné.
+     */
+    public ProfileDaemon startDaemon(int port) throws IOException {
+        ProfileDaemon daemon = new ProfileDaemon(LOG_FILE, ProfileRules.loadOrDefaults(RULES_FILE), port);
+        daemon.start();
+        return daemon;
     }
 
-    private Map<String, Object> buildProfilesJson(Map<String, UserStats> statsByEmail) {
-        List<Map<String, Object>> users = new ArrayList<>();
-
-        for (UserStats s : statsByEmail.values()) {
-            Map<String, Object> u = new LinkedHashMap<>();
-            u.put("email", s.email);
-            u.put("totalReads", s.reads);
-            u.put("totalWrites", s.writes);
-
-            int totalOps = s.reads + s.writes;
-            String readWriteProfile = "NEUTRAL";
-            if (totalOps > 0) {
-                double ratioRead = (double) s.reads / totalOps;
-                double ratioWrite = (double) s.writes / totalOps;
-
-                if (s.reads > s.writes && ratioRead >= 0.6) {
-                    readWriteProfile = "READ_HEAVY";
-                } else if (s.writes > s.reads && ratioWrite >= 0.6) {
-                    readWriteProfile = "WRITE_HEAVY";
+    /**
+     * Profils par fenêtre (tumbling / glissante) sur api.log et ses archives, écrits en streaming
+     * dans profiles-windowed.json. Les champs du premier jeu de règles sont à plat, ceux des suivants
+     * dans un objet au nom du jeu ; les sketches ne sont calculés que sur les profils globaux.
+     * Retourne le nombre de fenêtres écrites.
+     */
+    public int aggregateAndWriteWindowedProfiles(List<WindowSpec> specs) throws IOException {
+        Files.createDirectories(WINDOWED_OUT_FILE.getParent());
+        ProfileRules rules = ProfileRules.loadOrDefaults(RULES_FILE);
+
+        int[] windowCount = {0};
+        try (JsonGenerator gen = MAPPER.getFactory().createGenerator(Files.newBufferedWriter(WINDOWED_OUT_FILE))) {
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("windows");
+
+            WindowedProfileAggregator aggregator = new WindowedProfileAggregator(specs, rules, (spec, start, end, users) -> {
+                gen.writeStartObject();
+                gen.writeStringField("window", spec.toString());
+                gen.writeStringField("start", Instant.ofEpochMilli(start).toString());
+                gen.writeStringField("end", Instant.ofEpochMilli(end).toString());
+                gen.writeArrayFieldStart("users");
+
+                List<List<SnapshotColumn>> columns = new ArrayList<>();
+                for (RuleSet ruleSet : rules.ruleSets()) {
+                    columns.add(ruleSet.counterColumns((id, c) -> users.get(id).counters()[c]));
                 }
-            }
-            u.put("readWriteProfile", readWriteProfile);
-
-            u.put("expensiveSearches", s.expensiveSearches);
-            String expensiveProfile =
-                    (double) s.expensiveSearches /s.reads >= 0.6 ? "EXPENSIVE_SEEKER" : "NORMAL";
-            u.put("expensiveProfile", expensiveProfile);
-
-            users.add(u);
+                for (int id = 0; id < users.size(); id++) {
+                    gen.writeStartObject();
+                    gen.writeStringField("email", users.get(id).email());
+                    for (int r = 0; r < columns.size(); r++) {
+                        if (r > 0) gen.writeObjectFieldStart(rules.ruleSets().get(r).name());
+                        for (SnapshotColumn column : columns.get(r)) {
+                            column.write(gen, id);
+                        }
+                        if (r > 0) gen.writeEndObject();
+                    }
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+                windowCount[0]++;
+            });
+            new MultiFileLogAggregator(rules).readInOrder(LOG_DIR, aggregator);
+            aggregator.finish();
+
+            gen.writeEndArray();
+            gen.writeNumberField("lateEvents", aggregator.getLateEvents());
+            gen.writeEndObject();
         }
-
-        Map<String, Object> root = new LinkedHashMap<>();
-        root.put("users", users);
-        return root;
-    }
-
-    private String getText(JsonNode node, String field) {
-        JsonNode value = node.get(field);
-        return (value != null && !value.isNull()) ? value.asText() : null;
+        return windowCount[0];
     }
 
-    private String extractEmail(JsonNode node) {
-        String direct = getText(node, "email");
-        if (direct != null) return direct;
-
-        JsonNode userConnected = node.get("userConnected");
-        if (userConnected != null && !userConnected.isNull()) {
-            JsonNode emailNode = userConnected.get("email");
-            if (emailNode != null && !emailNode.isNull()) {
-                return emailNode.asText();
+    // Par jeu de règles : snapshot binaire puis export JSON en streaming depuis le snapshot
+    private Path writeProfiles(ProfileStore store, ProfileRules rules) throws IOException {
+        Path first = null;
+        for (RuleSet ruleSet : rules.ruleSets()) {
+            Path snapshot = OUT_DIR.resolve(ruleSet.output() + ".bin");
+            Path out = OUT_DIR.resolve(ruleSet.output() + ".json");
+            ProfileSnapshotWriter.write(snapshot, store, ruleSet.columns(store));
+            // fermé aussitôt : le snapshot suivant pourra remplacer le fichier
+            try (ProfileSnapshotReader reader = new ProfileSnapshotReader(snapshot)) {
+                reader.exportJson(out);
             }
+            if (first == null) first = out;
         }
-        return null;
+        return first;
     }
 
-    private Double parseDoubleOrNull(String text) {
-        if (text == null) return null;
-        try {
-            return Double.parseDouble(text);
-        } catch (NumberFormatException e) {
-            return null;
-        }
-    }
+    private ProfileStore aggregate(Path logFile, ProfileRules rules) throws IOException {
+        ProfileStore store = rules.newStore();
 
-    private static class UserStats {
-        final String email;
-        int reads;
-        int writes;
-        int expensiveSearches;
-
-        UserStats(String email) {
-            this.email = email;
+        LogLineAggregator aggregator = new LogLineAggregator(rules);
+        try (InputStream in = Files.newInputStream(logFile)) {
+            new LogLineReader().read(in, (line, off, len) -> aggregator.accumulate(store, line, off, len));
         }
+
+        return store;
     }
 }
@@ -0,0 +1,19 @@
+package org.example.aggregation;
+
+public enum AggregationMode {
+    SEQUENTIAL("Séquentiel"),
+    PARALLEL("Parallèle"),
+    INCREMENTAL("Incrémental"),
+    ARCHIVED("Logs archivés (période)");
+
+    private final String label;
+
+    AggregationMode(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
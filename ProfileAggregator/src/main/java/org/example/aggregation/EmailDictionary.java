@@ -0,0 +1,117 @@
+package org.example.aggregation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionnaire email -> id dense (0, 1, 2...) : table à adressage ouvert sur les octets UTF-8,
+ * les emails sont stockés bout à bout dans un seul byte[]. La recherche d'un email déjà connu
+ * se fait directement sur la tranche de la ligne de log, sans créer de String.
+ */
+public class EmailDictionary {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] arena = new byte[INITIAL_CAPACITY * 24];
+    private int arenaSize;
+
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // slot -> id + 1 (0 = libre), taille puissance de 2, chargée à 50 % max
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    public int idOf(byte[] buf, int off, int len) {
+        int hash = hash(buf, off, len);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                int id = insert(buf, off, len, hash);
+                table[slot] = id + 1;
+                if (size * 2 > table.length) rehash();
+                return id;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && sameBytes(id, buf, off, len)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int idOf(String email) {
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        return idOf(bytes, 0, bytes.length);
+    }
+
+    public String email(int id) {
+        return new String(arena, offsets[id], length(id), StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Accès bruts aux octets, pour fusionner deux dictionnaires sans passer par des String
+    byte[] arena() {
+        return arena;
+    }
+
+    int offset(int id) {
+        return offsets[id];
+    }
+
+    int length(int id) {
+        return (id + 1 < size ? offsets[id + 1] : arenaSize) - offsets[id];
+    }
+
+    public long heapBytes() {
+        return arena.length + 4L * offsets.length + 4L * hashes.length + 4L * table.length;
+    }
+
+    private int insert(byte[] buf, int off, int len, int hash) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        if (arenaSize + len > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + len));
+        }
+        System.arraycopy(buf, off, arena, arenaSize, len);
+        offsets[size] = arenaSize;
+        hashes[size] = hash;
+        arenaSize += len;
+        return size++;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (newTable[slot] != 0) slot = (slot + 1) & mask;
+            newTable[slot] = id + 1;
+        }
+        table = newTable;
+    }
+
+    private boolean sameBytes(int id, byte[] buf, int off, int len) {
+        int start = offsets[id];
+        return length(id) == len && Arrays.equals(arena, start, start + len, buf, off, off + len);
+    }
+
+    static int hash(byte[] buf, int off, int len) {
+        int h = 0x811C9DC5;
+        for (int i = off; i < off + len; i++) {
+            h = (h ^ buf[i]) * 0x01000193;
+        }
+        // mélange final : les bits de poids faible servent d'index
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+}
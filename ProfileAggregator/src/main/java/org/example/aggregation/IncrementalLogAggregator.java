@@ -0,0 +1,307 @@
+package org.example.aggregation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.aggregation.rules.ProfileRules;
+import org.example.aggregation.sketch.TDigest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Agrégation incrémentale : l'état agrégé et un checkpoint (identité du fichier, offset, dernier timestamp)
+ * sont persistés à côté de profiles.json. Les exécutions suivantes ne lisent que les octets ajoutés depuis.
+ *
+ * Cas gérés :
+ * - fichier tronqué ou réécrit (même inode, taille plus petite ou en-tête différent) : reprise à l'offset 0 ;
+ * - rotation logback (TimeBasedRollingPolicy : api.log renommé en api-yyyy-MM-dd.log puis recréé) :
+ *   on termine l'ancien fichier retrouvé parmi les fichiers archivés, puis les archives suivantes dans
+ *   l'ordre des dates (plusieurs rotations entre deux exécutions), puis le nouveau api.log depuis 0.
+ *   Si l'archive du checkpoint a disparu (maxHistory), la fin de ce fichier est perdue : c'est signalé,
+ *   et seules les archives de journées postérieures au dernier timestamp lu sont agrégées.
+ */
+public class IncrementalLogAggregator {
+
+    private static final int STATE_VERSION = 3;
+    private static final int HEAD_BYTES = 1024;
+    private static final int TAIL_BYTES = 64 * 1024;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ProfileRules rules;
+    private final ParallelLogAggregator delegate;
+    private final Path stateFile;
+
+    public IncrementalLogAggregator(Path stateFile, ProfileRules rules) {
+        this.stateFile = stateFile;
+        this.rules = rules;
+        this.delegate = new ParallelLogAggregator(rules);
+    }
+
+    public record Checkpoint(String path, String fileKey, int headLength, long headCrc, long offset, String lastTimestamp) {
+    }
+
+    // distinct : registres HyperLogLog par sketch ; quantiles : centroïdes par sketch (null = aucune valeur)
+    public record UserState(String email, int[] counters, byte[][] distinct, TDigest.State[] quantiles) {
+    }
+
+    // keys : forme des compteurs et sketches (ProfileRules.stateKeys()) au moment de l'écriture
+    public record State(int version, Checkpoint checkpoint, List<String> keys, List<UserState> users) {
+    }
+
+    public ProfileStore aggregate(Path logFile) throws IOException {
+        State previous = loadState();
+        ProfileStore store = rules.newStore();
+        if (previous != null) {
+            for (UserState u : previous.users()) {
+                int id = store.userId(u.email());
+                for (int c = 0; c < u.counters().length; c++) {
+                    store.add(id, c, u.counters()[c]);
+                }
+                for (int s = 0; s < u.distinct().length; s++) {
+                    store.distinctSketch(s).merge(id, u.distinct()[s]);
+                }
+                for (int s = 0; s < u.quantiles().length; s++) {
+                    store.quantileSketch(s).merge(id, u.quantiles()[s]);
+                }
+            }
+        }
+
+        long startOffset = 0;
+        Checkpoint cp = previous != null ? previous.checkpoint() : null;
+        String lastTimestamp = cp != null ? cp.lastTimestamp() : null;
+        if (cp != null && Files.exists(logFile)) {
+            String key = fileKey(logFile);
+            if (isSameFile(logFile, cp)) {
+                // même fichier : on reprend à l'offset, sauf s'il a été tronqué
+                startOffset = Files.size(logFile) >= cp.offset() ? cp.offset() : 0;
+            } else if (key == null || !key.equals(cp.fileKey())) {
+                // rotation : fin de l'ancien fichier et archives créées depuis, fermées par logback
+                for (Segment segment : rotatedSegments(logFile, cp)) {
+                    long end = Files.size(segment.file());
+                    store = ProfileStore.merge(store, delegate.aggregate(segment.file(), segment.start(), end));
+                    lastTimestamp = lastTimestamp(segment.file(), segment.start(), end, lastTimestamp);
+                }
+            }
+            // sinon même inode réécrit depuis le début : relu depuis 0
+        }
+
+        if (!Files.exists(logFile)) {
+            return store;
+        }
+
+        long size = Files.size(logFile);
+        long endOffset = lastCompleteLineEnd(logFile, startOffset, size);
+        store = ProfileStore.merge(store, delegate.aggregate(logFile, startOffset, endOffset));
+
+        lastTimestamp = lastTimestamp(logFile, startOffset, endOffset, lastTimestamp);
+        saveState(new State(STATE_VERSION, checkpointOf(logFile, endOffset, lastTimestamp),
+                rules.stateKeys(), toUserStates(store)));
+        return store;
+    }
+
+    // Fichier archivé à agréger à partir de start
+    private record Segment(Path file, long start) {
+    }
+
+    // ---------------------------------------------------------------- état
+
+    private State loadState() throws IOException {
+        if (!Files.exists(stateFile)) return null;
+        JsonNode tree = MAPPER.readTree(stateFile.toFile());
+        if (tree.path("version").asInt() != STATE_VERSION) return null; // ancien format : on repart de 0
+        State state = MAPPER.treeToValue(tree, State.class);
+        // règles modifiées depuis la dernière exécution : les compteurs persistés ne correspondent plus, on repart de 0
+        return rules.stateKeys().equals(state.keys()) ? state : null;
+    }
+
+    private void saveState(State state) throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        MAPPER.writeValue(tmp.toFile(), state);
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<UserState> toUserStates(ProfileStore store) {
+        List<UserState> users = new ArrayList<>(store.size());
+        for (int id = 0; id < store.size(); id++) {
+            int[] counters = new int[store.counterCount()];
+            for (int c = 0; c < counters.length; c++) {
+                counters[c] = store.get(id, c);
+            }
+            byte[][] distinct = new byte[store.distinctCount()][];
+            for (int s = 0; s < distinct.length; s++) {
+                distinct[s] = store.distinctSketch(s).registers(id);
+            }
+            TDigest.State[] quantiles = new TDigest.State[store.quantileCount()];
+            for (int s = 0; s < quantiles.length; s++) {
+                quantiles[s] = store.quantileSketch(s).state(id);
+            }
+            users.add(new UserState(store.email(id), counters, distinct, quantiles));
+        }
+        return users;
+    }
+
+    // ---------------------------------------------------------------- identité du fichier
+
+    private static Checkpoint checkpointOf(Path file, long offset, String lastTimestamp) throws IOException {
+        int headLength = (int) Math.min(HEAD_BYTES, offset);
+        return new Checkpoint(file.toString(), fileKey(file), headLength, headCrc(file, headLength), offset, lastTimestamp);
+    }
+
+    private static boolean isSameFile(Path file, Checkpoint cp) throws IOException {
+        String key = fileKey(file);
+        if (key != null && cp.fileKey() != null && !key.equals(cp.fileKey())) {
+            return false;
+        }
+        // même inode mais contenu réécrit depuis le début (ou pas d'inode disponible) : on compare l'en-tête
+        return Files.size(file) >= cp.headLength() && headCrc(file, cp.headLength()) == cp.headCrc();
+    }
+
+    /**
+     * Archives à agréger après une rotation, par date croissante : la fin du fichier du checkpoint,
+     * puis en entier chaque archive plus récente.
+     */
+    private static List<Segment> rotatedSegments(Path logFile, Checkpoint cp) throws IOException {
+        String name = logFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot > 0 ? name.substring(0, dot) : name) + "-";
+        String suffix = dot > 0 ? name.substring(dot) : "";
+
+        Path dir = logFile.toAbsolutePath().getParent();
+        List<Path> archives;
+        try (Stream<Path> files = Files.list(dir)) {
+            // api-yyyy-MM-dd.log : l'ordre des noms est celui des dates
+            archives = files
+                    .filter(p -> {
+                        String n = p.getFileName().toString();
+                        return n.startsWith(prefix) && n.endsWith(suffix)
+                                && n.length() > prefix.length() + suffix.length();
+                    })
+                    .sorted()
+                    .toList();
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        int next = -1;
+        for (int i = archives.size() - 1; i >= 0; i--) {
+            Path candidate = archives.get(i);
+            if (isSameFile(candidate, cp) && Files.size(candidate) >= cp.offset()) {
+                segments.add(new Segment(candidate, cp.offset()));
+                next = i + 1;
+                break;
+            }
+        }
+        if (next < 0) {
+            String day = day(cp.lastTimestamp());
+            System.err.println("Archive de " + cp.path() + " introuvable (supprimée par maxHistory ?) : lignes après l'offset "
+                    + cp.offset() + " perdues, reprise aux archives postérieures au " + (day != null ? day : "début"));
+            next = 0;
+            while (day != null && next < archives.size()
+                    && archiveDay(archives.get(next), prefix, suffix).compareTo(day) <= 0) {
+                next++;
+            }
+        }
+        for (int i = next; i < archives.size(); i++) {
+            segments.add(new Segment(archives.get(i), 0));
+        }
+        return segments;
+    }
+
+    private static String archiveDay(Path archive, String prefix, String suffix) {
+        String n = archive.getFileName().toString();
+        return n.substring(prefix.length(), n.length() - suffix.length());
+    }
+
+    // Journée (UTC, comme %d{yyyy-MM-dd} côté API) d'un @timestamp, null si absent ou illisible
+    private static String day(String timestamp) {
+        if (timestamp == null) return null;
+        try {
+            return OffsetDateTime.parse(timestamp).withOffsetSameInstant(ZoneOffset.UTC).toLocalDate().toString();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String fileKey(Path file) throws IOException {
+        Object key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        return key != null ? key.toString() : null;
+    }
+
+    private static long headCrc(Path file, int length) throws IOException {
+        CRC32 crc = new CRC32();
+        if (length > 0) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buf = ByteBuffer.allocate(length);
+                while (buf.hasRemaining() && channel.read(buf, buf.position()) > 0) {
+                    // lecture jusqu'à length octets
+                }
+                buf.flip();
+                crc.update(buf);
+            }
+        }
+        return crc.getValue();
+    }
+
+    // ---------------------------------------------------------------- lignes
+
+    // Fin de la dernière ligne complète dans [start, size) : une ligne en cours d'écriture sera lue la prochaine fois
+    private static long lastCompleteLineEnd(Path file, long start, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            long pos = size;
+            while (pos > start) {
+                int n = (int) Math.min(buf.capacity(), pos - start);
+                buf.clear().limit(n);
+                channel.read(buf, pos - n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') {
+                        return pos - n + i + 1;
+                    }
+                }
+                pos -= n;
+            }
+        }
+        return start;
+    }
+
+    // Dernier timestamp lu dans [start, end), previous si la plage n'en contient pas
+    private static String lastTimestamp(Path file, long start, long end, String previous) throws IOException {
+        String timestamp = end > start ? readLastTimestamp(file, end) : null;
+        return timestamp != null ? timestamp : previous;
+    }
+
+    private static String readLastTimestamp(Path file, long end) throws IOException {
+        if (end == 0) return null;
+
+        long start = Math.max(0, end - TAIL_BYTES);
+        byte[] tail = new byte[(int) (end - start)];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.wrap(tail);
+            while (buf.hasRemaining() && channel.read(buf, start + buf.position()) > 0) {
+                // lecture de la fin du fichier
+            }
+        }
+
+        LogLineScanner scanner = new LogLineScanner("@timestamp");
+        int lineEnd = tail.length;
+        for (int i = tail.length - 2; i >= -1; i--) {
+            if (i == -1 || tail[i] == '\n') {
+                if (scanner.scan(tail, i + 1, lineEnd - i - 1) && scanner.has(0)) {
+                    return scanner.string(0);
+                }
+                lineEnd = i;
+            }
+        }
+        return null;
+    }
+}
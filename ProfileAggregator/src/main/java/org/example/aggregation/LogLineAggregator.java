@@ -0,0 +1,126 @@
+package org.example.aggregation;
+
+import org.example.aggregation.rules.LinePredicate;
+import org.example.aggregation.rules.ProfileRules;
+import org.example.aggregation.sketch.HyperLogLogColumn;
+
+/**
+ * Règles d'agrégation d'une ligne de log, partagées par le mode séquentiel et le mode parallèle.
+ * Les champs utiles sont extraits en streaming par {@link LogLineScanner} : une instance par thread.
+ * Les compteurs de tous les jeux de règles sont évalués sur le même scan de la ligne.
+ */
+public class LogLineAggregator {
+
+    private final ProfileRules rules;
+    private final LinePredicate[] counters;
+    private final ProfileRules.DistinctSketch[] distinctSketches;
+    private final ProfileRules.QuantileSketch[] quantileSketches;
+    private final LogLineScanner scanner;
+
+    // filtre temporel [fromMillis, toMillis) sur @timestamp, désactivé par défaut
+    private final long fromMillis;
+    private final long toMillis;
+    private final boolean timeFiltered;
+
+    private int emailField;
+
+    public LogLineAggregator(ProfileRules rules) {
+        this(rules, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public LogLineAggregator(ProfileRules rules, long fromMillis, long toMillis) {
+        this.rules = rules;
+        this.counters = rules.counters();
+        this.distinctSketches = rules.distinctSketches();
+        this.quantileSketches = rules.quantileSketches();
+        this.scanner = new LogLineScanner(rules.fields());
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.timeFiltered = fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE;
+    }
+
+    // Retourne l'id de l'utilisateur mis à jour, -1 si la ligne est ignorée
+    public int accumulate(ProfileStore store, byte[] buf, int off, int len) {
+        if (!parse(buf, off, len)) return -1;
+
+        int id = userId(store);
+        for (int c = 0; c < counters.length; c++) {
+            if (counters[c].test(scanner)) {
+                store.increment(id, c);
+            }
+        }
+
+        for (int s = 0; s < distinctSketches.length; s++) {
+            ProfileRules.DistinctSketch sketch = distinctSketches[s];
+            if (sketch.when().test(scanner) && hasAll(sketch.slots())) {
+                store.addDistinct(id, s, hash(sketch.slots()));
+            }
+        }
+        for (int s = 0; s < quantileSketches.length; s++) {
+            ProfileRules.QuantileSketch sketch = quantileSketches[s];
+            if (sketch.when().test(scanner)) {
+                // NaN si absent ou "null"
+                double value = scanner.doubleValue(sketch.slot());
+                if (!Double.isNaN(value)) {
+                    store.addValue(id, s, value);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Analyse la ligne ; retourne true si elle concerne un utilisateur connu (email + champs obligatoires des règles)
+     * et passe le filtre temporel. Les accesseurs ci-dessous lisent ensuite la ligne courante.
+     */
+    public boolean parse(byte[] buf, int off, int len) {
+        if (!scanner.scan(buf, off, len)) return false;
+
+        if (timeFiltered) {
+            long timestamp = scanner.epochMillis(ProfileRules.TIMESTAMP);
+            if (timestamp == Long.MIN_VALUE || timestamp < fromMillis || timestamp >= toMillis) return false;
+        }
+
+        // email : à la racine ou dans userConnected (MDC)
+        emailField = scanner.has(ProfileRules.EMAIL) ? ProfileRules.EMAIL : ProfileRules.USER_CONNECTED_EMAIL;
+        return scanner.has(emailField) && rules.accepts(scanner);
+    }
+
+    public String email() {
+        return scanner.string(emailField);
+    }
+
+    // Id de l'utilisateur de la ligne courante, recherché directement sur les octets de l'email
+    public int userId(ProfileStore store) {
+        if (scanner.isEscaped(emailField)) {
+            return store.userId(email());
+        }
+        return store.userId(scanner.buffer(), scanner.valueOffset(emailField), scanner.valueLength(emailField));
+    }
+
+    private boolean hasAll(int[] slots) {
+        for (int slot : slots) {
+            if (!scanner.has(slot)) return false;
+        }
+        return true;
+    }
+
+    // Hash des octets bruts des champs, sans String
+    private long hash(int[] slots) {
+        long h = 0;
+        for (int i = 0; i < slots.length; i++) {
+            long fieldHash = HyperLogLogColumn.hash(scanner.buffer(), scanner.valueOffset(slots[i]), scanner.valueLength(slots[i]));
+            h = i == 0 ? fieldHash : HyperLogLogColumn.combine(h, fieldHash);
+        }
+        return h;
+    }
+
+    public long timestamp() {
+        return scanner.epochMillis(ProfileRules.TIMESTAMP);
+    }
+
+    // Le compteur global counter s'applique-t-il à la ligne courante ?
+    public boolean matches(int counter) {
+        return counters[counter].test(scanner);
+    }
+}
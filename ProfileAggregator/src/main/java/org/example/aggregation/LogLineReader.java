@@ -0,0 +1,70 @@
+package org.example.aggregation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Découpage en lignes d'un flux d'octets (fichier, gzip, région mappée) sans créer de String :
+ * chaque ligne est passée au handler sous forme de tranche d'un buffer réutilisé.
+ */
+public class LogLineReader {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface LineHandler {
+        void onLine(byte[] buf, int off, int len) throws IOException;
+    }
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int carry; // octets d'une ligne incomplète en tête de block
+
+    public void read(InputStream in, LineHandler handler) throws IOException {
+        carry = 0;
+        int n;
+        while ((n = in.read(block, carry, block.length - carry)) != -1) {
+            consume(carry + n, handler);
+        }
+        flush(handler);
+    }
+
+    public void read(ByteBuffer region, LineHandler handler) throws IOException {
+        carry = 0;
+        int pos = region.position();
+        int limit = region.limit();
+        while (pos < limit) {
+            int n = Math.min(block.length - carry, limit - pos);
+            region.get(pos, block, carry, n);
+            pos += n;
+            consume(carry + n, handler);
+        }
+        flush(handler);
+    }
+
+    private void consume(int filled, LineHandler handler) throws IOException {
+        int lineStart = 0;
+        for (int i = 0; i < filled; i++) {
+            if (block[i] == '\n') {
+                handler.onLine(block, lineStart, i - lineStart);
+                lineStart = i + 1;
+            }
+        }
+
+        carry = filled - lineStart;
+        if (lineStart > 0) {
+            System.arraycopy(block, lineStart, block, 0, carry);
+        } else if (carry == block.length) {
+            // ligne plus longue que le buffer : on l'agrandit
+            block = Arrays.copyOf(block, block.length * 2);
+        }
+    }
+
+    private void flush(LineHandler handler) throws IOException {
+        if (carry > 0) {
+            handler.onLine(block, 0, carry);
+            carry = 0;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package org.example.aggregation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Extraction en streaming de quelques champs d'une ligne de log JSON, directement sur les octets.
+ * Seuls les champs demandés sont repérés (début/fin dans le buffer), tout le reste est sauté
+ * sans construire d'arbre ni de String. Les objets imbriqués sont aplatis avec un '.'
+ * ("userConnected.email"), ce qui couvre aussi les clés déjà pointées ("query.minPrice").
+ * Les familles de clés au nom variable ("path.*", "query.*") sont repérées via {@link #capture}.
+ *
+ * Une instance n'est pas thread-safe : un scanner par thread / par chunk.
+ */
+public class LogLineScanner {
+
+    private static final int MAX_DEPTH = 2;
+
+    private final byte[][] fields;
+    private int[] valueStart;
+    private int[] valueEnd;
+    private boolean[] quoted;
+    private boolean[] escaped;
+
+    // clés de premier niveau capturées par préfixe, réinitialisées à chaque ligne
+    private byte[][] prefixes = new byte[0][];
+    private int captured;
+    private int[] capturedPrefix = new int[4];
+    private int[] capturedKeyStart = new int[4];
+    private int[] capturedKeyEnd = new int[4];
+    private int[] capturedValue = new int[4]; // champ temporaire : index dans valueStart / valueEnd
+
+    private byte[] buf;
+    private int pos;
+    private int end;
+
+    // clé de l'objet parent en cours (profondeur 2)
+    private int parentKeyStart;
+    private int parentKeyEnd;
+
+    public LogLineScanner(String... fields) {
+        this.fields = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            this.fields[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+        }
+        this.valueStart = new int[fields.length];
+        this.valueEnd = new int[fields.length];
+        this.quoted = new boolean[fields.length];
+        this.escaped = new boolean[fields.length];
+    }
+
+    /**
+     * Capture en plus toutes les clés de premier niveau qui commencent par l'un des préfixes
+     * (ex. "path." pour "path.name", "path.id"...). Sans préfixe, l'analyse n'a aucun surcoût.
+     */
+    public LogLineScanner capture(String... prefixes) {
+        this.prefixes = new byte[prefixes.length][];
+        for (int i = 0; i < prefixes.length; i++) {
+            this.prefixes[i] = prefixes[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return this;
+    }
+
+    /**
+     * Analyse la ligne buf[off, off + len). Retourne false si la ligne est vide ou n'est pas un objet JSON valide.
+     */
+    public boolean scan(byte[] buf, int off, int len) {
+        this.buf = buf;
+        this.pos = off;
+        this.end = off + len;
+        for (int i = 0; i < fields.length; i++) {
+            valueStart[i] = -1;
+        }
+        captured = 0;
+
+        skipWhitespace();
+        if (pos >= end || buf[pos] != '{') {
+            return false;
+        }
+        try {
+            scanObject(1);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    public boolean has(int field) {
+        return valueStart[field] >= 0 && !isNullLiteral(field);
+    }
+
+    public boolean equalsIgnoreCase(int field, byte[] expectedAscii) {
+        if (!has(field) || escaped[field]) return false;
+        int start = valueStart[field];
+        int len = valueEnd[field] - start;
+        if (len != expectedAscii.length) return false;
+        for (int i = 0; i < len; i++) {
+            int a = buf[start + i];
+            int b = expectedAscii[i];
+            if (a != b && toLowerAscii(a) != toLowerAscii(b)) return false;
+        }
+        return true;
+    }
+
+    public boolean contentEquals(int field, byte[] expected) {
+        if (!has(field) || escaped[field]) return false;
+        return valueLength(field) == expected.length && regionMatches(valueStart[field], expected);
+    }
+
+    public boolean startsWith(int field, byte[] prefix) {
+        if (!has(field) || escaped[field]) return false;
+        return valueLength(field) >= prefix.length && regionMatches(valueStart[field], prefix);
+    }
+
+    public String string(int field) {
+        if (!has(field)) return null;
+        int start = valueStart[field];
+        int stop = valueEnd[field];
+        if (!escaped[field]) {
+            return new String(buf, start, stop - start, StandardCharsets.UTF_8);
+        }
+        return unescape(start, stop);
+    }
+
+    // Tranche brute de la valeur (sans les guillemets), pour les lookups sans String
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int valueOffset(int field) {
+        return valueStart[field];
+    }
+
+    public int valueLength(int field) {
+        return valueEnd[field] - valueStart[field];
+    }
+
+    public boolean isEscaped(int field) {
+        return escaped[field];
+    }
+
+    /**
+     * Valeur numérique du champ (nombre JSON ou chaîne numérique comme "50.0"), NaN si absente ou invalide.
+     */
+    public double doubleValue(int field) {
+        if (!has(field) || escaped[field]) return Double.NaN;
+        return parseDouble(buf, valueStart[field], valueEnd[field]);
+    }
+
+    /**
+     * Timestamp ISO-8601 ("2025-12-18T12:49:56.473849455Z", "...+01:00", "...+0100") en epoch millis,
+     * Long.MIN_VALUE si absent ou invalide.
+     */
+    public long epochMillis(int field) {
+        if (!has(field) || escaped[field]) return Long.MIN_VALUE;
+        return parseEpochMillis(buf, valueStart[field], valueEnd[field]);
+    }
+
+    // ---------------------------------------------------------------- parsing
+
+    private void scanObject(int depth) {
+        pos++; // '{'
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            expect('"');
+            int keyStart = pos;
+            boolean keyEscaped = skipStringBody();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+
+            int field = keyEscaped ? -1 : matchField(depth, keyStart, keyEnd);
+            byte c = peek();
+            int prefix;
+            if (field < 0 && depth == 1 && c != '{' && (prefix = matchPrefix(keyStart, keyEnd)) >= 0) {
+                readCaptured(prefix, keyStart, keyEnd);
+            } else if (c == '{' && field < 0 && depth < MAX_DEPTH) {
+                parentKeyStart = keyStart;
+                parentKeyEnd = keyEnd;
+                scanObject(depth + 1);
+            } else if (field >= 0) {
+                readValue(field);
+            } else {
+                skipValue();
+            }
+
+            skipWhitespace();
+            byte next = next();
+            if (next == '}') return;
+            if (next != ',') throw new IllegalStateException();
+        }
+    }
+
+    private int matchField(int depth, int keyStart, int keyEnd) {
+        int keyLen = keyEnd - keyStart;
+        int parentLen = depth == 1 ? 0 : parentKeyEnd - parentKeyStart + 1;
+        for (int f = 0; f < fields.length; f++) {
+            byte[] name = fields[f];
+            if (name.length != parentLen + keyLen) continue;
+            if (parentLen > 0) {
+                if (name[parentLen - 1] != '.'
+                        || !regionEquals(name, 0, parentKeyStart, parentLen - 1)) continue;
+            }
+            if (regionEquals(name, parentLen, keyStart, keyLen)) return f;
+        }
+        return -1;
+    }
+
+    private int matchPrefix(int keyStart, int keyEnd) {
+        for (int p = 0; p < prefixes.length; p++) {
+            byte[] prefix = prefixes[p];
+            if (keyEnd - keyStart > prefix.length && regionEquals(prefix, 0, keyStart, prefix.length)) return p;
+        }
+        return -1;
+    }
+
+    // La valeur est lue dans un champ temporaire au-delà des champs déclarés, pour réutiliser has()/string()
+    private void readCaptured(int prefix, int keyStart, int keyEnd) {
+        if (captured == capturedPrefix.length) {
+            int size = captured * 2;
+            capturedPrefix = Arrays.copyOf(capturedPrefix, size);
+            capturedKeyStart = Arrays.copyOf(capturedKeyStart, size);
+            capturedKeyEnd = Arrays.copyOf(capturedKeyEnd, size);
+            capturedValue = Arrays.copyOf(capturedValue, size);
+        }
+        int field = fields.length + captured;
+        if (field >= valueStart.length) {
+            int size = fields.length + capturedPrefix.length;
+            valueStart = Arrays.copyOf(valueStart, size);
+            valueEnd = Arrays.copyOf(valueEnd, size);
+            quoted = Arrays.copyOf(quoted, size);
+            escaped = Arrays.copyOf(escaped, size);
+        }
+        capturedPrefix[captured] = prefix;
+        capturedKeyStart[captured] = keyStart;
+        capturedKeyEnd[captured] = keyEnd;
+        capturedValue[captured] = field;
+        readValue(field);
+        captured++;
+    }
+
+    // ---------------------------------------------------------------- clés capturées
+
+    public int capturedCount() {
+        return captured;
+    }
+
+    // Index (dans capture(...)) du préfixe de la i-ème clé capturée
+    public int capturedPrefix(int i) {
+        return capturedPrefix[i];
+    }
+
+    // Nom de la clé sans son préfixe ("name" pour "path.name")
+    public String capturedName(int i) {
+        int start = capturedKeyStart[i] + prefixes[capturedPrefix[i]].length;
+        return new String(buf, start, capturedKeyEnd[i] - start, StandardCharsets.UTF_8);
+    }
+
+    // Valeur de la clé, null pour un null JSON
+    public String capturedString(int i) {
+        return string(capturedValue[i]);
+    }
+
+    private boolean regionEquals(byte[] name, int nameOff, int bufOff, int len) {
+        for (int i = 0; i < len; i++) {
+            if (name[nameOff + i] != buf[bufOff + i]) return false;
+        }
+        return true;
+    }
+
+    private void readValue(int field) {
+        if (peek() == '"') {
+            pos++;
+            valueStart[field] = pos;
+            escaped[field] = skipStringBody();
+            valueEnd[field] = pos - 1;
+            quoted[field] = true;
+        } else {
+            valueStart[field] = pos;
+            skipValue();
+            valueEnd[field] = pos;
+            quoted[field] = false;
+            escaped[field] = false;
+        }
+    }
+
+    // pos est juste après le '"' ouvrant ; retourne true si la chaîne contient des échappements
+    private boolean skipStringBody() {
+        boolean hasEscape = false;
+        while (true) {
+            byte b = next();
+            if (b == '"') return hasEscape;
+            if (b == '\\') {
+                hasEscape = true;
+                pos++;
+            }
+        }
+    }
+
+    private void skipValue() {
+        byte c = peek();
+        if (c == '"') {
+            pos++;
+            skipStringBody();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                byte b = next();
+                if (b == '"') {
+                    skipStringBody();
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else {
+            // nombre, true, false, null
+            while (pos < end) {
+                byte b = buf[pos];
+                if (b == ',' || b == '}' || b == ']' || (b & 0xFF) <= ' ') break;
+                pos++;
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && (buf[pos] & 0xFF) <= ' ') pos++;
+    }
+
+    private byte peek() {
+        if (pos >= end) throw new IllegalStateException();
+        return buf[pos];
+    }
+
+    private byte next() {
+        if (pos >= end) throw new IllegalStateException();
+        return buf[pos++];
+    }
+
+    private void expect(char c) {
+        if (pos >= end || buf[pos] != c) throw new IllegalStateException();
+        pos++;
+    }
+
+    private boolean isNullLiteral(int field) {
+        if (quoted[field]) return false;
+        int start = valueStart[field];
+        return valueEnd[field] - start == 4
+                && buf[start] == 'n' && buf[start + 1] == 'u' && buf[start + 2] == 'l' && buf[start + 3] == 'l';
+    }
+
+    private boolean regionMatches(int start, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[start + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static int toLowerAscii(int c) {
+        return (c >= 'A' && c <= 'Z') ? c + 32 : c;
+    }
+
+    // ---------------------------------------------------------------- valeurs
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    static double parseDouble(byte[] buf, int start, int stop) {
+        if (start == stop || !startsLikeNumber(buf[start])) {
+            return Double.NaN; // "null", "", ... sans allouer
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < stop && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        for (; i < stop; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (dot) fractionDigits++;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+
+        // chemin rapide exact : mantisse sur 15 chiffres max et puissance de 10 représentable
+        if (i == stop && digits > 0 && digits <= 15 && fractionDigits < POW10.length) {
+            double value = mantissa / POW10[fractionDigits];
+            return negative ? -value : value;
+        }
+
+        // exposants, valeurs longues, "null", "NaN"... : on délègue au parseur du JDK
+        try {
+            return Double.parseDouble(new String(buf, start, stop - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    static long parseEpochMillis(byte[] buf, int start, int stop) {
+        // yyyy-MM-ddTHH:mm:ss au minimum
+        if (stop - start < 19 || buf[start + 4] != '-' || buf[start + 7] != '-'
+                || (buf[start + 10] != 'T' && buf[start + 10] != ' ')
+                || buf[start + 13] != ':' || buf[start + 16] != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(buf, start, 4);
+        int month = digits(buf, start + 5, 2);
+        int day = digits(buf, start + 8, 2);
+        int hour = digits(buf, start + 11, 2);
+        int minute = digits(buf, start + 14, 2);
+        int second = digits(buf, start + 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) return Long.MIN_VALUE;
+
+        int i = start + 19;
+        int millis = 0;
+        if (i < stop && buf[i] == '.') {
+            i++;
+            int scale = 100;
+            while (i < stop && buf[i] >= '0' && buf[i] <= '9') {
+                millis += (buf[i] - '0') * scale;
+                scale /= 10;
+                i++;
+            }
+        }
+
+        // décalage +HH:mm, +HHmm ou +HH (Z ou absent : UTC)
+        int offsetSeconds = 0;
+        if (i < stop && (buf[i] == '+' || buf[i] == '-')) {
+            int rest = stop - i - 1;
+            int oh;
+            int om = 0;
+            if (rest >= 5 && buf[i + 3] == ':') {
+                oh = digits(buf, i + 1, 2);
+                om = digits(buf, i + 4, 2);
+            } else if (rest >= 4) {
+                oh = digits(buf, i + 1, 2);
+                om = digits(buf, i + 3, 2);
+            } else if (rest >= 2) {
+                oh = digits(buf, i + 1, 2);
+            } else {
+                return Long.MIN_VALUE;
+            }
+            if ((oh | om) < 0) return Long.MIN_VALUE;
+            offsetSeconds = (oh * 3600 + om * 60) * (buf[i] == '-' ? -1 : 1);
+        }
+
+        long epochDay = epochDay(year, month, day);
+        long seconds = epochDay * 86400 + hour * 3600L + minute * 60L + second - offsetSeconds;
+        return seconds * 1000 + millis;
+    }
+
+    private static int digits(byte[] buf, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    // Nombre de jours depuis 1970-01-01 (calendrier grégorien proleptique)
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static boolean startsLikeNumber(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'N' || b == 'I';
+    }
+
+    private String unescape(int start, int stop) {
+        StringBuilder sb = new StringBuilder(stop - start);
+        int runStart = start;
+        int i = start;
+        while (i < stop) {
+            if (buf[i] != '\\') {
+                i++;
+                continue;
+            }
+            sb.append(new String(buf, runStart, i - runStart, StandardCharsets.UTF_8));
+            byte c = buf[i + 1];
+            switch (c) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    sb.append((char) Integer.parseInt(new String(buf, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                    i += 4;
+                }
+                default -> sb.append((char) c);
+            }
+            i += 2;
+            runStart = i;
+        }
+        sb.append(new String(buf, runStart, stop - runStart, StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+}
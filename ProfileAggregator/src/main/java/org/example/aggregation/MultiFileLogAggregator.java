@@ -0,0 +1,174 @@
+package org.example.aggregation;
+
+import org.example.aggregation.rules.ProfileRules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Agrégation d'un répertoire de logs archivés par logback (api.log, api-yyyy-MM-dd.log, api-yyyy-MM-dd.log.gz)
+ * sur une période [from, to). Les fichiers dont la journée est hors période sont écartés sur leur nom,
+ * sans être ouverts ; les autres sont agrégés en parallèle, un fichier par tâche.
+ * Seuls les fichiers à cheval sur une borne filtrent ligne à ligne sur @timestamp.
+ */
+public class MultiFileLogAggregator {
+
+    private static final Pattern ROTATED_NAME = Pattern.compile("^(.+)-(\\d{4}-\\d{2}-\\d{2})\\.log(\\.gz)?$");
+    private static final int GZIP_BUFFER = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final String baseName;
+    private final ZoneId zone; // fuseau de %d{yyyy-MM-dd} côté API (UTC dans le conteneur)
+    private final ProfileRules rules;
+
+    public MultiFileLogAggregator(ProfileRules rules) {
+        this(ForkJoinPool.commonPool(), "api", ZoneOffset.UTC, rules);
+    }
+
+    public MultiFileLogAggregator(ForkJoinPool pool, String baseName, ZoneId zone, ProfileRules rules) {
+        this.pool = pool;
+        this.baseName = baseName;
+        this.zone = zone;
+        this.rules = rules;
+    }
+
+    record LogFile(Path path, long startMillis, long endMillis, boolean gzip) {
+    }
+
+    /**
+     * @param from borne incluse, null = pas de borne
+     * @param to   borne exclue, null = pas de borne
+     */
+    public ProfileStore aggregate(Path logDir, Instant from, Instant to) throws IOException {
+        long fromMillis = from != null ? from.toEpochMilli() : Long.MIN_VALUE;
+        long toMillis = to != null ? to.toEpochMilli() : Long.MAX_VALUE;
+
+        List<ForkJoinTask<ProfileStore>> tasks = new ArrayList<>();
+        for (LogFile file : listFiles(logDir)) {
+            if (file.endMillis() <= fromMillis || file.startMillis() >= toMillis) {
+                continue; // hors période : le fichier n'est pas ouvert
+            }
+            // fichier entièrement dans la période : pas besoin de filtrer chaque ligne
+            boolean inside = file.startMillis() >= fromMillis && file.endMillis() <= toMillis;
+            tasks.add(pool.submit(new FileTask(file,
+                    inside ? Long.MIN_VALUE : fromMillis,
+                    inside ? Long.MAX_VALUE : toMillis)));
+        }
+
+        ProfileStore store = rules.newStore();
+        try {
+            for (ForkJoinTask<ProfileStore> task : tasks) {
+                store = ProfileStore.merge(store, task.join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return store;
+    }
+
+    /**
+     * Lit séquentiellement toutes les lignes du répertoire, fichier par fichier dans l'ordre chronologique
+     * (archives puis api.log), pour les traitements qui ont besoin de l'ordre des événements.
+     */
+    public void readInOrder(Path logDir, LogLineReader.LineHandler handler) throws IOException {
+        List<LogFile> files = listFiles(logDir);
+        files.sort(Comparator.comparingLong(LogFile::startMillis));
+
+        LogLineReader reader = new LogLineReader();
+        for (LogFile file : files) {
+            try (InputStream in = open(file)) {
+                reader.read(in, handler);
+            }
+        }
+    }
+
+    List<LogFile> listFiles(Path logDir) throws IOException {
+        List<LogFile> files = new ArrayList<>();
+        long latestRotatedEnd = Long.MIN_VALUE;
+        Path active = null;
+
+        try (Stream<Path> entries = Files.list(logDir)) {
+            for (Path path : (Iterable<Path>) entries::iterator) {
+                String name = path.getFileName().toString();
+                if (name.equals(baseName + ".log")) {
+                    active = path;
+                    continue;
+                }
+                Matcher m = ROTATED_NAME.matcher(name);
+                if (!m.matches() || !m.group(1).equals(baseName)) continue;
+
+                LocalDate day;
+                try {
+                    day = LocalDate.parse(m.group(2));
+                } catch (DateTimeParseException e) {
+                    continue;
+                }
+                long start = day.atStartOfDay(zone).toInstant().toEpochMilli();
+                long end = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                files.add(new LogFile(path, start, end, m.group(3) != null));
+                latestRotatedEnd = Math.max(latestRotatedEnd, end);
+            }
+        }
+
+        if (active != null) {
+            // fichier courant : depuis la fin du dernier archivé jusqu'à sa dernière écriture
+            long end = Files.getLastModifiedTime(active).toMillis() + 1;
+            files.add(new LogFile(active, latestRotatedEnd, Math.max(end, latestRotatedEnd), false));
+        }
+        return files;
+    }
+
+    private ProfileStore aggregateFile(LogFile file, long fromMillis, long toMillis) throws IOException {
+        ProfileStore store = rules.newStore();
+        LogLineAggregator aggregator = new LogLineAggregator(rules, fromMillis, toMillis);
+        LogLineReader reader = new LogLineReader();
+
+        try (InputStream in = open(file)) {
+            reader.read(in, (line, off, len) -> aggregator.accumulate(store, line, off, len));
+        }
+        return store;
+    }
+
+    private static InputStream open(LogFile file) throws IOException {
+        InputStream raw = Files.newInputStream(file.path());
+        return file.gzip() ? new GZIPInputStream(raw, GZIP_BUFFER) : raw;
+    }
+
+    private class FileTask extends RecursiveTask<ProfileStore> {
+
+        private final LogFile file;
+        private final long fromMillis;
+        private final long toMillis;
+
+        FileTask(LogFile file, long fromMillis, long toMillis) {
+            this.file = file;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+
+        @Override
+        protected ProfileStore compute() {
+            try {
+                return aggregateFile(file, fromMillis, toMillis);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
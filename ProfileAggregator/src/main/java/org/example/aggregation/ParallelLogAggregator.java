@@ -0,0 +1,138 @@
+package org.example.aggregation;
+
+import org.example.aggregation.rules.ProfileRules;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Agrégation parallèle d'un fichier de logs : le fichier est mappé en mémoire, découpé en chunks
+ * alignés sur les fins de ligne, chaque chunk est agrégé dans sa propre map puis les maps sont fusionnées.
+ */
+public class ParallelLogAggregator {
+
+    private static final long MIN_CHUNK_SIZE = 1L << 20;  // 1 Mo
+    private static final long MAX_CHUNK_SIZE = 1L << 28;  // 256 Mo, bien sous la limite de 2 Go d'un mapping
+    private static final int CHUNKS_PER_THREAD = 4;       // pour lisser les chunks plus lents
+
+    private final ForkJoinPool pool;
+    private final ProfileRules rules;
+
+    public ParallelLogAggregator(ProfileRules rules) {
+        this(ForkJoinPool.commonPool(), rules);
+    }
+
+    public ParallelLogAggregator(ForkJoinPool pool, ProfileRules rules) {
+        this.pool = pool;
+        this.rules = rules;
+    }
+
+    public ProfileStore aggregate(Path logFile) throws IOException {
+        return aggregate(logFile, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Agrège uniquement les octets [start, end) du fichier (borné à sa taille courante).
+     * start doit être un début de ligne.
+     */
+    public ProfileStore aggregate(Path logFile, long start, long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            end = Math.min(end, channel.size());
+            if (end <= start) {
+                return rules.newStore();
+            }
+
+            List<long[]> chunks = split(channel, start, end);
+            try {
+                return pool.invoke(new ChunkTask(channel, chunks, 0, chunks.size()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private List<long[]> split(FileChannel channel, long start, long size) throws IOException {
+        long target = (size - start) / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+        target = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, target));
+
+        List<long[]> chunks = new ArrayList<>();
+        while (start < size) {
+            long end = Math.min(start + target, size);
+            if (end < size) {
+                end = nextLineStart(channel, end, size);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    // Position du premier octet qui suit le prochain '\n' à partir de pos (ou fin de fichier)
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private ProfileStore aggregateChunk(FileChannel channel, long start, long end) throws IOException {
+        ProfileStore store = rules.newStore();
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+        LogLineAggregator aggregator = new LogLineAggregator(rules);
+        new LogLineReader().read(buf, (line, off, len) -> aggregator.accumulate(store, line, off, len));
+        return store;
+    }
+
+    private class ChunkTask extends RecursiveTask<ProfileStore> {
+
+        private final FileChannel channel;
+        private final List<long[]> chunks;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, List<long[]> chunks, int from, int to) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ProfileStore compute() {
+            if (to - from == 1) {
+                long[] chunk = chunks.get(from);
+                try {
+                    return aggregateChunk(channel, chunk[0], chunk[1]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            int mid = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(channel, chunks, from, mid);
+            ChunkTask right = new ChunkTask(channel, chunks, mid, to);
+            left.fork();
+            ProfileStore rightResult = right.compute();
+            return ProfileStore.merge(left.join(), rightResult);
+        }
+    }
+}
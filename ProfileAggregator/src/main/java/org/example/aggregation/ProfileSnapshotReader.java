@@ -0,0 +1,329 @@
+package org.example.aggregation;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lecture d'un snapshot écrit par {@link ProfileSnapshotWriter}, mappé en mémoire : aucune donnée n'est
+ * chargée à l'ouverture, la recherche par email est en O(1) via la table de hachage du fichier.
+ * L'export JSON est produit à la demande, en streaming.
+ *
+ * Le fichier est couvert par des mappings d'1 Gio (un seul en deçà) qui se chevauchent de 8 octets : pas de
+ * limite à 2 Gio, et une valeur lue (int, double) tient toujours dans un seul mapping. {@link #close()} libère les mappings sans
+ * attendre le GC, sans quoi Windows refuse de remplacer le fichier au snapshot suivant ; le lecteur
+ * ne doit plus servir ensuite, ni être fermé pendant qu'un autre thread le lit.
+ */
+public class ProfileSnapshotReader implements AutoCloseable {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final int OVERLAP = 8; // largeur de la plus grande valeur (FLOAT64)
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // module jdk.unsupported absent : pas de libération anticipée
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final int chunkShift;
+    private final long chunkMask;
+    private MappedByteBuffer[] chunks;
+    private final int userCount;
+    private final int tableSize;
+
+    private final String[] columnNames;
+    private final SnapshotColumn.Type[] columnTypes;
+    private final String[][] columnLabels;
+    private final long[] columnStarts;
+    // colonnes lues dans les mappings, écrites en JSON par le même encodeur que le démon
+    private final SnapshotColumn[] columns;
+
+    private final long offsetsStart;
+    private final long emailsStart;
+    private final long tableStart;
+
+    public ProfileSnapshotReader(Path file) throws IOException {
+        this(file, CHUNK_SHIFT);
+    }
+
+    // chunkShift réduit : plusieurs mappings même pour un petit fichier (tests)
+    ProfileSnapshotReader(Path file, int chunkShift) throws IOException {
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12) {
+                throw new IOException("Pas un snapshot de profils : " + file);
+            }
+            chunks = new MappedByteBuffer[(int) ((size + chunkMask) >>> chunkShift)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << chunkShift;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(chunkMask + 1 + OVERLAP, size - start));
+            }
+        }
+
+        try {
+            if (getInt(0) != ProfileSnapshotWriter.MAGIC) {
+                throw new IOException("Pas un snapshot de profils : " + file);
+            }
+            if (getInt(4) != ProfileSnapshotWriter.VERSION) {
+                throw new IOException("Version de snapshot non supportée : " + getInt(4));
+            }
+
+            int headerLength = getInt(8);
+            byte[] header = new byte[headerLength];
+            get(12, header);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+
+            userCount = in.readInt();
+            long emailBytes = in.readLong();
+            tableSize = in.readInt();
+            int columnCount = in.readInt();
+
+            columnNames = new String[columnCount];
+            columnTypes = new SnapshotColumn.Type[columnCount];
+            columnLabels = new String[columnCount][];
+            columnStarts = new long[columnCount];
+
+            offsetsStart = 12L + headerLength;
+            emailsStart = offsetsStart + 4L * (userCount + 1);
+            long pos = emailsStart + emailBytes;
+            for (int c = 0; c < columnCount; c++) {
+                columnTypes[c] = SnapshotColumn.Type.values()[in.readByte()];
+                columnNames[c] = in.readUTF();
+                if (columnTypes[c] == SnapshotColumn.Type.CODE8) {
+                    String[] labels = new String[in.readShort()];
+                    for (int i = 0; i < labels.length; i++) {
+                        labels[i] = in.readUTF();
+                    }
+                    columnLabels[c] = labels;
+                }
+                columnStarts[c] = pos;
+                pos += (long) userCount * SnapshotColumn.width(columnTypes[c]);
+            }
+            tableStart = pos;
+
+            columns = new SnapshotColumn[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                int column = c;
+                columns[c] = switch (columnTypes[c]) {
+                    case INT32 -> SnapshotColumn.counter(columnNames[c], id -> intValue(id, column));
+                    case CODE8 -> SnapshotColumn.code(columnNames[c], columnLabels[c], id -> intValue(id, column));
+                    case FLOAT64 -> SnapshotColumn.decimal(columnNames[c], id -> decimalValue(id, column));
+                };
+            }
+    
+        } catch (IOException | RuntimeException e) {
+            close(); // fichier invalide : mappings libérés tout de suite
+            throw e;
+        }
+    }
+
+    public int size() {
+        return userCount;
+    }
+
+    public int columnCount() {
+        return columnNames.length;
+    }
+
+    public String columnName(int column) {
+        return columnNames[column];
+    }
+
+    public int columnIndex(String name) {
+        for (int c = 0; c < columnNames.length; c++) {
+            if (columnNames[c].equals(name)) return c;
+        }
+        return -1;
+    }
+
+    /**
+     * Id de l'utilisateur dans le snapshot, -1 s'il est absent.
+     */
+    public int find(String email) {
+        byte[] key = email.getBytes(StandardCharsets.UTF_8);
+        int mask = tableSize - 1;
+        int slot = EmailDictionary.hash(key, 0, key.length) & mask;
+        while (true) {
+            int entry = getInt(tableStart + 4L * slot);
+            if (entry == 0) return -1;
+            int id = entry - 1;
+            if (emailEquals(id, key)) return id;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public String email(int id) {
+        int start = emailOffset(id);
+        byte[] bytes = new byte[emailOffset(id + 1) - start];
+        get(emailsStart + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int intValue(int id, int column) {
+        if (columnTypes[column] == SnapshotColumn.Type.INT32) {
+            return getInt(columnStarts[column] + 4L * id);
+        }
+        return getByte(columnStarts[column] + id) & 0xFF;
+    }
+
+    public String label(int id, int column) {
+        return columnLabels[column][intValue(id, column)];
+    }
+
+    // Colonne FLOAT64, NaN si l'utilisateur n'a pas de valeur
+    public double decimalValue(int id, int column) {
+        return getDouble(columnStarts[column] + 8L * id);
+    }
+
+    public SnapshotColumn.Type columnType(int column) {
+        return columnTypes[column];
+    }
+
+    // Profil complet d'un utilisateur, null s'il est absent
+    public Map<String, Object> profile(String email) {
+        int id = find(email);
+        if (id < 0) return null;
+
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("email", email);
+        for (int c = 0; c < columnNames.length; c++) {
+            profile.put(columnNames[c], value(id, c));
+        }
+        return profile;
+    }
+
+    /**
+     * Export JSON {"users": [...]} écrit au fil de l'eau avec JsonGenerator, sans rien construire en mémoire.
+     */
+    public void exportJson(Path out) throws IOException {
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        try (OutputStream os = Files.newOutputStream(out)) {
+            exportJson(os);
+        }
+    }
+
+    public void exportJson(OutputStream os) throws IOException {
+        try (JsonGenerator gen = new JsonFactory().createGenerator(os, JsonEncoding.UTF8)) {
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("users");
+            for (int id = 0; id < userCount; id++) {
+                gen.writeStartObject();
+                gen.writeStringField("email", email(id));
+                for (SnapshotColumn column : columns) {
+                    column.write(gen, id);
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    // Valeur typée d'une colonne : Integer, libellé, Double ou null (FLOAT64 sans valeur)
+    private Object value(int id, int column) {
+        return switch (columnTypes[column]) {
+            case INT32 -> intValue(id, column);
+            case CODE8 -> label(id, column);
+            case FLOAT64 -> {
+                double value = decimalValue(id, column);
+                yield Double.isNaN(value) ? null : value;
+            }
+        };
+    }
+
+    private int emailOffset(int id) {
+        return getInt(offsetsStart + 4L * id);
+    }
+
+    private boolean emailEquals(int id, byte[] key) {
+        int start = emailOffset(id);
+        if (emailOffset(id + 1) - start != key.length) return false;
+        long base = emailsStart + start;
+        for (int i = 0; i < key.length; i++) {
+            if (getByte(base + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------- accès au fichier
+
+    private ByteBuffer chunk(long pos) {
+        if (chunks == null) throw new IllegalStateException("Snapshot fermé");
+        return chunks[(int) (pos >>> chunkShift)];
+    }
+
+    private byte getByte(long pos) {
+        return chunk(pos).get((int) (pos & chunkMask));
+    }
+
+    private int getInt(long pos) {
+        return chunk(pos).getInt((int) (pos & chunkMask));
+    }
+
+    private double getDouble(long pos) {
+        return chunk(pos).getDouble((int) (pos & chunkMask));
+    }
+
+    // Octets à partir de pos, éventuellement à cheval sur deux mappings
+    private void get(long pos, byte[] dst) {
+        int done = 0;
+        while (done < dst.length) {
+            long at = pos + done;
+            int offset = (int) (at & chunkMask);
+            int n = (int) Math.min(dst.length - done, chunkMask + 1 - offset);
+            chunk(at).get(offset, dst, done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Libère les mappings (Unsafe.invokeCleaner, faute d'API publique en Java 21) : le fichier peut ensuite
+     * être remplacé, y compris sous Windows. Sans jdk.unsupported, ils restent libérés par le GC.
+     */
+    @Override
+    public void close() {
+        MappedByteBuffer[] mapped = chunks;
+        chunks = null;
+        if (mapped == null || INVOKE_CLEANER == null) return;
+        for (MappedByteBuffer chunk : mapped) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, chunk);
+            } catch (ReflectiveOperationException e) {
+                return;
+            }
+        }
+    }
+}
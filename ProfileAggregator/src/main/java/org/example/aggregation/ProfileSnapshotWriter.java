@@ -0,0 +1,115 @@
+package org.example.aggregation;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Écrit un snapshot binaire colonne par colonne (big-endian) :
+ *
+ * <pre>
+ * "PROF" | version:int | headerLength:int
+ * header : userCount:int | emailBytes:long | tableSize:int | columnCount:int
+ *          puis par colonne : type:byte | name:UTF | (CODE8) labelCount:short + labels:UTF
+ * emailOffsets : int[userCount + 1]
+ * emailBytes   : UTF-8 bout à bout
+ * colonnes     : int[userCount] (INT32), byte[userCount] (CODE8) ou double[userCount] (FLOAT64),
+ *                dans l'ordre du header
+ * hashTable    : int[tableSize], id + 1 (0 = libre), adressage ouvert sur le hash de l'email
+ * </pre>
+ */
+public final class ProfileSnapshotWriter {
+
+    static final int MAGIC = 0x50524F46; // "PROF"
+    static final int VERSION = 2;
+
+    private ProfileSnapshotWriter() {
+    }
+
+    public static void write(Path file, ProfileStore store, List<SnapshotColumn> columns) throws IOException {
+        EmailDictionary dict = store.dictionary();
+        int userCount = store.size();
+        int tableSize = tableSizeFor(userCount);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            byte[] header = header(userCount, dict, tableSize, columns);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(header.length);
+            out.write(header);
+
+            int offset = 0;
+            for (int id = 0; id < userCount; id++) {
+                out.writeInt(offset);
+                offset += dict.length(id);
+            }
+            out.writeInt(offset);
+            for (int id = 0; id < userCount; id++) {
+                out.write(dict.arena(), dict.offset(id), dict.length(id));
+            }
+
+            for (SnapshotColumn column : columns) {
+                for (int id = 0; id < userCount; id++) {
+                    switch (column.type()) {
+                        case INT32 -> out.writeInt(column.valueOf().applyAsInt(id));
+                        case CODE8 -> out.writeByte(column.valueOf().applyAsInt(id));
+                        case FLOAT64 -> out.writeDouble(column.decimalOf().applyAsDouble(id));
+                    }
+                }
+            }
+
+            for (int entry : hashTable(dict, tableSize)) {
+                out.writeInt(entry);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] header(int userCount, EmailDictionary dict, int tableSize, List<SnapshotColumn> columns)
+            throws IOException {
+        long emailBytes = 0;
+        for (int id = 0; id < userCount; id++) {
+            emailBytes += dict.length(id);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(userCount);
+        out.writeLong(emailBytes);
+        out.writeInt(tableSize);
+        out.writeInt(columns.size());
+        for (SnapshotColumn column : columns) {
+            out.writeByte(column.type().ordinal());
+            out.writeUTF(column.name());
+            if (column.type() == SnapshotColumn.Type.CODE8) {
+                out.writeShort(column.labels().length);
+                for (String label : column.labels()) {
+                    out.writeUTF(label);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int[] hashTable(EmailDictionary dict, int tableSize) {
+        int[] table = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int id = 0; id < dict.size(); id++) {
+            int slot = EmailDictionary.hash(dict.arena(), dict.offset(id), dict.length(id)) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = id + 1;
+        }
+        return table;
+    }
+
+    // Puissance de 2, chargée à 50 % max
+    private static int tableSizeFor(int userCount) {
+        int size = 16;
+        while (size < userCount * 2) size <<= 1;
+        return size;
+    }
+}
@@ -0,0 +1,168 @@
+package org.example.aggregation;
+
+import org.example.aggregation.sketch.HyperLogLogColumn;
+import org.example.aggregation.sketch.TDigestColumn;
+
+import java.util.Arrays;
+
+/**
+ * Profils stockés en colonnes : les emails sont encodés en ids denses par {@link EmailDictionary}
+ * et chaque compteur est un int[] indexé par id. Pas d'objet par utilisateur : quelques tableaux
+ * primitifs quel que soit le nombre d'utilisateurs, donc peu de pression sur le GC.
+ * Les sketches (valeurs distinctes, quantiles) suivent le même découpage : une colonne par sketch,
+ * de taille fixe par utilisateur, fusionnable entre chunks.
+ */
+public class ProfileStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final EmailDictionary dictionary = new EmailDictionary();
+    private final int[][] counters; // [compteur][id]
+    private final HyperLogLogColumn[] distinct;
+    private final TDigestColumn[] quantiles;
+    private int capacity = INITIAL_CAPACITY;
+
+    public ProfileStore(int counterCount) {
+        this(counterCount, new int[0], new double[0]);
+    }
+
+    /**
+     * @param counterCount          un compteur par compteur global des règles
+     * @param distinctPrecisions    précision de chaque sketch HyperLogLog
+     * @param quantileCompressions  compression de chaque sketch t-digest
+     */
+    public ProfileStore(int counterCount, int[] distinctPrecisions, double[] quantileCompressions) {
+        counters = new int[counterCount][INITIAL_CAPACITY];
+        distinct = new HyperLogLogColumn[distinctPrecisions.length];
+        for (int s = 0; s < distinct.length; s++) {
+            distinct[s] = new HyperLogLogColumn(distinctPrecisions[s], INITIAL_CAPACITY);
+        }
+        quantiles = new TDigestColumn[quantileCompressions.length];
+        for (int s = 0; s < quantiles.length; s++) {
+            quantiles[s] = new TDigestColumn(quantileCompressions[s], INITIAL_CAPACITY);
+        }
+    }
+
+    public int userId(byte[] buf, int off, int len) {
+        int id = dictionary.idOf(buf, off, len);
+        ensureCapacity(id + 1);
+        return id;
+    }
+
+    public int userId(String email) {
+        int id = dictionary.idOf(email);
+        ensureCapacity(id + 1);
+        return id;
+    }
+
+    public void increment(int id, int counter) {
+        counters[counter][id]++;
+    }
+
+    public void add(int id, int counter, int delta) {
+        counters[counter][id] += delta;
+    }
+
+    public int get(int id, int counter) {
+        return counters[counter][id];
+    }
+
+    public void addDistinct(int id, int sketch, long hash) {
+        distinct[sketch].add(id, hash);
+    }
+
+    public long distinct(int id, int sketch) {
+        return distinct[sketch].estimate(id);
+    }
+
+    public void addValue(int id, int sketch, double value) {
+        quantiles[sketch].add(id, value);
+    }
+
+    public double quantile(int id, int sketch, double q) {
+        return quantiles[sketch].quantile(id, q);
+    }
+
+    public int distinctCount() {
+        return distinct.length;
+    }
+
+    public int quantileCount() {
+        return quantiles.length;
+    }
+
+    public HyperLogLogColumn distinctSketch(int sketch) {
+        return distinct[sketch];
+    }
+
+    public TDigestColumn quantileSketch(int sketch) {
+        return quantiles[sketch];
+    }
+
+    public String email(int id) {
+        return dictionary.email(id);
+    }
+
+    public int size() {
+        return dictionary.size();
+    }
+
+    public int counterCount() {
+        return counters.length;
+    }
+
+    public EmailDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Fusionne deux stores (ex. deux chunks) : le plus petit est versé dans le plus grand, qui est retourné.
+     */
+    public static ProfileStore merge(ProfileStore left, ProfileStore right) {
+        if (left.size() < right.size()) {
+            ProfileStore tmp = left;
+            left = right;
+            right = tmp;
+        }
+        EmailDictionary dict = right.dictionary;
+        for (int otherId = 0; otherId < right.size(); otherId++) {
+            int id = left.userId(dict.arena(), dict.offset(otherId), dict.length(otherId));
+            for (int c = 0; c < left.counters.length; c++) {
+                left.counters[c][id] += right.counters[c][otherId];
+            }
+            for (int s = 0; s < left.distinct.length; s++) {
+                left.distinct[s].merge(id, right.distinct[s], otherId);
+            }
+            for (int s = 0; s < left.quantiles.length; s++) {
+                left.quantiles[s].merge(id, right.quantiles[s], otherId);
+            }
+        }
+        return left;
+    }
+
+    public long heapBytes() {
+        long bytes = dictionary.heapBytes() + 4L * counters.length * capacity;
+        for (HyperLogLogColumn sketch : distinct) {
+            bytes += sketch.heapBytes();
+        }
+        for (TDigestColumn sketch : quantiles) {
+            bytes += sketch.heapBytes();
+        }
+        return bytes;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) return;
+        int newCapacity = Math.max(required, capacity * 2);
+        for (int c = 0; c < counters.length; c++) {
+            counters[c] = Arrays.copyOf(counters[c], newCapacity);
+        }
+        for (HyperLogLogColumn sketch : distinct) {
+            sketch.ensureCapacity(newCapacity);
+        }
+        for (TDigestColumn sketch : quantiles) {
+            sketch.ensureCapacity(newCapacity);
+        }
+        capacity = newCapacity;
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.aggregation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Colonne d'un snapshot binaire de profils : compteur int32, code de classification sur un octet
+ * avec sa table de libellés, ou décimal float64 (estimation d'un sketch, NaN = pas de valeur).
+ * valueOf (ou decimalOf pour FLOAT64) donne la valeur pour un id utilisateur.
+ */
+public record SnapshotColumn(String name, Type type, String[] labels, IntUnaryOperator valueOf,
+                             IntToDoubleFunction decimalOf) {
+
+    public enum Type {
+        INT32,
+        CODE8,
+        FLOAT64
+    }
+
+    public static SnapshotColumn counter(String name, IntUnaryOperator valueOf) {
+        return new SnapshotColumn(name, Type.INT32, null, valueOf, null);
+    }
+
+    public static SnapshotColumn code(String name, String[] labels, IntUnaryOperator codeOf) {
+        if (labels.length > 256) {
+            throw new IllegalArgumentException("Trop de libellés pour " + name + " : " + labels.length);
+        }
+        return new SnapshotColumn(name, Type.CODE8, labels, codeOf, null);
+    }
+
+    public static SnapshotColumn decimal(String name, IntToDoubleFunction decimalOf) {
+        return new SnapshotColumn(name, Type.FLOAT64, null, null, decimalOf);
+    }
+
+    // Champ JSON de cette colonne pour un id (FLOAT64 sans valeur : null)
+    public void write(JsonGenerator gen, int id) throws IOException {
+        switch (type) {
+            case INT32 -> gen.writeNumberField(name, valueOf.applyAsInt(id));
+            case CODE8 -> gen.writeStringField(name, labels[valueOf.applyAsInt(id)]);
+            case FLOAT64 -> {
+                double value = decimalOf.applyAsDouble(id);
+                if (Double.isNaN(value)) {
+                    gen.writeNullField(name);
+                } else {
+                    gen.writeNumberField(name, value);
+                }
+            }
+        }
+    }
+
+    // Octets par utilisateur dans le snapshot
+    public static int width(Type type) {
+        return switch (type) {
+            case INT32 -> 4;
+            case CODE8 -> 1;
+            case FLOAT64 -> 8;
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.aggregation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fenêtre temporelle de taille size, avancée de slide : tumbling si slide == size, glissante si slide < size.
+ * Notation texte : "1h" (tumbling) ou "1h/5m" (glissante), unités s, m, h, d.
+ */
+public record WindowSpec(Duration size, Duration slide) {
+
+    public WindowSpec {
+        if (size.isZero() || size.isNegative() || slide.isZero() || slide.isNegative()) {
+            throw new IllegalArgumentException("Fenêtre invalide: " + size + "/" + slide);
+        }
+        if (slide.compareTo(size) > 0) {
+            throw new IllegalArgumentException("Le pas (" + slide + ") dépasse la taille de la fenêtre (" + size + ")");
+        }
+    }
+
+    public static WindowSpec tumbling(Duration size) {
+        return new WindowSpec(size, size);
+    }
+
+    public boolean isTumbling() {
+        return size.equals(slide);
+    }
+
+    public static WindowSpec parse(String text) {
+        String[] parts = text.trim().split("/");
+        Duration size = parseDuration(parts[0]);
+        Duration slide = parts.length > 1 ? parseDuration(parts[1]) : size;
+        return new WindowSpec(size, slide);
+    }
+
+    // "5m,1h,1d/1h"
+    public static List<WindowSpec> parseList(String text) {
+        List<WindowSpec> specs = new ArrayList<>();
+        for (String part : text.split(",")) {
+            if (!part.isBlank()) specs.add(parse(part));
+        }
+        return specs;
+    }
+
+    private static Duration parseDuration(String text) {
+        text = text.trim();
+        long value = Long.parseLong(text.substring(0, text.length() - 1));
+        return switch (text.charAt(text.length() - 1)) {
+            case 's' -> Duration.ofSeconds(value);
+            case 'm' -> Duration.ofMinutes(value);
+            case 'h' -> Duration.ofHours(value);
+            case 'd' -> Duration.ofDays(value);
+            default -> throw new IllegalArgumentException("Unité inconnue (s, m, h, d): " + text);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return isTumbling() ? format(size) : format(size) + "/" + format(slide);
+    }
+
+    private static String format(Duration d) {
+        long s = d.toSeconds();
+        if (s % 86400 == 0) return s / 86400 + "d";
+        if (s % 3600 == 0) return s / 3600 + "h";
+        if (s % 60 == 0) return s / 60 + "m";
+        return s + "s";
+    }
+}
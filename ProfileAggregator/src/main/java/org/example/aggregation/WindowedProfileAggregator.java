@@ -0,0 +1,228 @@
+package org.example.aggregation;
+
+import org.example.aggregation.rules.ProfileRules;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Profils par fenêtre temporelle (tumbling ou glissante) calculés sur @timestamp, en un seul passage.
+ *
+ * Chaque fenêtre est découpée en buckets de pgcd(taille, pas) ; chaque utilisateur garde un ring buffer
+ * de taille fixe (taille / bucket) de compteurs. Une fenêtre est émise dès qu'un événement la dépasse,
+ * puis les utilisateurs sans activité dans les fenêtres restantes sont oubliés : la mémoire reste bornée
+ * par le nombre d'utilisateurs actifs, quelle que soit la durée du flux.
+ *
+ * Les événements plus anciens que le ring buffer (ou que la fenêtre la plus ancienne non émise) sont
+ * comptés comme retardataires et ignorés.
+ */
+public class WindowedProfileAggregator implements LogLineReader.LineHandler {
+
+    // counters : un compteur par compteur global des règles
+    public record UserWindowStats(String email, int[] counters) {
+    }
+
+    @FunctionalInterface
+    public interface WindowSink {
+        void onWindow(WindowSpec spec, long startMillis, long endMillis, List<UserWindowStats> users) throws IOException;
+    }
+
+    private final LogLineAggregator parser;
+    private final int counterCount;
+    private final int[] hits; // compteurs de la ligne courante
+    private final List<WindowState> windows = new ArrayList<>();
+    private final WindowSink sink;
+
+    private long lateEvents;
+
+    public WindowedProfileAggregator(List<WindowSpec> specs, ProfileRules rules, WindowSink sink) {
+        this.parser = new LogLineAggregator(rules);
+        this.counterCount = rules.counterCount();
+        this.hits = new int[counterCount];
+        this.sink = sink;
+        for (WindowSpec spec : specs) {
+            windows.add(new WindowState(spec));
+        }
+    }
+
+    @Override
+    public void onLine(byte[] buf, int off, int len) throws IOException {
+        if (!parser.parse(buf, off, len)) return;
+
+        long timestamp = parser.timestamp();
+        if (timestamp == Long.MIN_VALUE) return;
+
+        for (int c = 0; c < counterCount; c++) {
+            hits[c] = parser.matches(c) ? 1 : 0;
+        }
+        String email = null;
+
+        for (WindowState window : windows) {
+            window.advanceTo(timestamp);
+            if (window.accepts(timestamp)) {
+                if (email == null) email = parser.email();
+                window.add(email, timestamp, hits);
+            } else {
+                lateEvents++;
+            }
+        }
+    }
+
+    // Fin du flux : émet les fenêtres encore ouvertes qui contiennent des événements
+    public void finish() throws IOException {
+        for (WindowState window : windows) {
+            window.flush();
+        }
+    }
+
+    public long getLateEvents() {
+        return lateEvents;
+    }
+
+    private class WindowState {
+
+        private final WindowSpec spec;
+        private final long sizeMillis;
+        private final long slideMillis;
+        private final long bucketMillis;
+        private final int buckets;
+
+        private final Map<String, UserRing> users = new HashMap<>();
+        private long nextWindowEnd = Long.MIN_VALUE;
+        private long maxBucket = Long.MIN_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        WindowState(WindowSpec spec) {
+            this.spec = spec;
+            this.sizeMillis = spec.size().toMillis();
+            this.slideMillis = spec.slide().toMillis();
+            this.bucketMillis = gcd(sizeMillis, slideMillis);
+            this.buckets = (int) (sizeMillis / bucketMillis);
+        }
+
+        void advanceTo(long timestamp) throws IOException {
+            if (nextWindowEnd == Long.MIN_VALUE) {
+                nextWindowEnd = Math.floorDiv(timestamp, slideMillis) * slideMillis + slideMillis;
+                return;
+            }
+            while (timestamp >= nextWindowEnd) {
+                emit(nextWindowEnd);
+                nextWindowEnd += slideMillis;
+                if (users.isEmpty() && timestamp >= nextWindowEnd) {
+                    // trou dans le flux : inutile d'émettre des fenêtres vides une à une
+                    nextWindowEnd = Math.floorDiv(timestamp, slideMillis) * slideMillis + slideMillis;
+                }
+            }
+        }
+
+        boolean accepts(long timestamp) {
+            long bucket = Math.floorDiv(timestamp, bucketMillis);
+            long oldestOpenBucket = Math.floorDiv(nextWindowEnd - sizeMillis, bucketMillis);
+            return bucket >= oldestOpenBucket && (maxBucket == Long.MIN_VALUE || bucket > maxBucket - buckets);
+        }
+
+        void add(String email, long timestamp, int[] hits) {
+            long bucket = Math.floorDiv(timestamp, bucketMillis);
+            users.computeIfAbsent(email, e -> new UserRing(buckets, counterCount)).add(bucket, hits);
+            maxBucket = Math.max(maxBucket, bucket);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+
+        void flush() throws IOException {
+            if (maxTimestamp == Long.MIN_VALUE) return;
+            while (nextWindowEnd - sizeMillis <= maxTimestamp && !users.isEmpty()) {
+                emit(nextWindowEnd);
+                nextWindowEnd += slideMillis;
+            }
+        }
+
+        private void emit(long end) throws IOException {
+            long start = end - sizeMillis;
+            long fromBucket = Math.floorDiv(start, bucketMillis);
+            long toBucket = Math.floorDiv(end, bucketMillis);
+
+            List<UserWindowStats> result = new ArrayList<>();
+            Iterator<Map.Entry<String, UserRing>> it = users.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, UserRing> entry = it.next();
+                UserRing ring = entry.getValue();
+                if (ring.lastBucket < fromBucket) {
+                    // plus aucune activité dans cette fenêtre ni dans les suivantes
+                    it.remove();
+                    continue;
+                }
+                int[] sums = ring.sum(fromBucket, toBucket);
+                if (ring.hasEvents(fromBucket, toBucket)) {
+                    result.add(new UserWindowStats(entry.getKey(), sums));
+                }
+            }
+
+            if (!result.isEmpty()) {
+                sink.onWindow(spec, start, end, result);
+            }
+        }
+    }
+
+    // Compteurs d'un utilisateur sur les derniers buckets, dans un tableau de taille fixe
+    private static class UserRing {
+
+        private final long[] bucketIds;
+        private final int[] events;   // lignes par bucket
+        private final int[] counters; // counterCount compteurs par bucket
+        private final int width;
+        private long lastBucket = Long.MIN_VALUE;
+
+        UserRing(int buckets, int counterCount) {
+            bucketIds = new long[buckets];
+            Arrays.fill(bucketIds, Long.MIN_VALUE);
+            events = new int[buckets];
+            counters = new int[buckets * counterCount];
+            width = counterCount;
+        }
+
+        void add(long bucket, int[] hits) {
+            int slot = (int) Math.floorMod(bucket, (long) bucketIds.length);
+            if (bucketIds[slot] != bucket) {
+                if (bucketIds[slot] > bucket) return; // slot déjà réutilisé par un bucket plus récent
+                bucketIds[slot] = bucket;
+                events[slot] = 0;
+                Arrays.fill(counters, slot * width, (slot + 1) * width, 0);
+            }
+            events[slot]++;
+            for (int c = 0; c < width; c++) {
+                counters[slot * width + c] += hits[c];
+            }
+            lastBucket = Math.max(lastBucket, bucket);
+        }
+
+        boolean hasEvents(long fromBucket, long toBucket) {
+            for (int slot = 0; slot < bucketIds.length; slot++) {
+                long id = bucketIds[slot];
+                if (id >= fromBucket && id < toBucket && events[slot] > 0) return true;
+            }
+            return false;
+        }
+
+        int[] sum(long fromBucket, long toBucket) {
+            int[] sums = new int[width];
+            for (int slot = 0; slot < bucketIds.length; slot++) {
+                long id = bucketIds[slot];
+                if (id >= fromBucket && id < toBucket) {
+                    for (int c = 0; c < width; c++) {
+                        sums[c] += counters[slot * width + c];
+                    }
+                }
+            }
+            return sums;
+        }
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,10 @@
+package org.example.aggregation.rules;
+
+import java.util.function.IntUnaryOperator;
+
+// Condition compilée sur les compteurs d'un profil (compteur global -> valeur)
+@FunctionalInterface
+public interface CounterPredicate {
+
+    boolean test(IntUnaryOperator counters);
+}
@@ -0,0 +1,14 @@
+package org.example.aggregation.rules;
+
+import org.example.aggregation.LogLineScanner;
+
+// Condition compilée sur la ligne courante d'un LogLineScanner (aucune allocation par ligne)
+@FunctionalInterface
+public interface LinePredicate {
+
+    boolean test(LogLineScanner line);
+
+    default LinePredicate and(LinePredicate other) {
+        return line -> test(line) && other.test(line);
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.aggregation.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.aggregation.LogLineScanner;
+import org.example.aggregation.ProfileStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Règles de profilage déclaratives (fichier JSON), compilées une fois en prédicats sur les champs du scanner.
+ *
+ * Tous les jeux de règles partagent un seul scanner et un seul ProfileStore : chaque compteur et chaque sketch
+ * a un indice global, et une ligne est lue une seule fois quel que soit le nombre de jeux de règles ou de dimensions.
+ * Format : voir default-rules.json.
+ */
+public final class ProfileRules {
+
+    // Champs toujours extraits, en tête de fields()
+    public static final int EMAIL = 0;
+    public static final int USER_CONNECTED_EMAIL = 1;
+    public static final int TIMESTAMP = 2;
+
+    private static final String DEFAULT_RESOURCE = "/default-rules.json";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static volatile ProfileRules defaults;
+
+    // Valeurs distinctes (HyperLogLog) de la combinaison des champs slots, sur les lignes qui vérifient when
+    public record DistinctSketch(int[] slots, LinePredicate when, int precision) {
+    }
+
+    // Distribution (t-digest) de la valeur numérique du champ slot, sur les lignes qui vérifient when
+    public record QuantileSketch(int slot, LinePredicate when, double compression) {
+    }
+
+    private final String[] fields;
+    private final LinePredicate required;
+    private final LinePredicate[] counters;
+    private final DistinctSketch[] distinctSketches;
+    private final QuantileSketch[] quantileSketches;
+    private final List<String> stateKeys;
+    private final List<RuleSet> ruleSets;
+
+    ProfileRules(String[] fields, LinePredicate required, LinePredicate[] counters,
+                 DistinctSketch[] distinctSketches, QuantileSketch[] quantileSketches,
+                 List<String> stateKeys, List<RuleSet> ruleSets) {
+        this.fields = fields;
+        this.required = required;
+        this.counters = counters;
+        this.distinctSketches = distinctSketches;
+        this.quantileSketches = quantileSketches;
+        this.stateKeys = List.copyOf(stateKeys);
+        this.ruleSets = List.copyOf(ruleSets);
+    }
+
+    // Règles par défaut (classpath), équivalentes aux profils READ/WRITE et EXPENSIVE historiques
+    public static ProfileRules defaults() {
+        ProfileRules rules = defaults;
+        if (rules == null) {
+            try (InputStream in = ProfileRules.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (in == null) throw new IOException("Ressource introuvable : " + DEFAULT_RESOURCE);
+                rules = compile(MAPPER.readTree(in));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            defaults = rules;
+        }
+        return rules;
+    }
+
+    public static ProfileRules load(Path file) throws IOException {
+        return compile(MAPPER.readTree(file.toFile()));
+    }
+
+    // Fichier de règles s'il existe, règles par défaut sinon
+    public static ProfileRules loadOrDefaults(Path file) throws IOException {
+        return Files.exists(file) ? load(file) : defaults();
+    }
+
+    /**
+     * @throws IllegalArgumentException si une règle est invalide (champ, opérateur ou compteur inconnu)
+     */
+    public static ProfileRules compile(JsonNode root) {
+        return new RuleCompiler().compile(root);
+    }
+
+    // Champs à extraire par le scanner, EMAIL / USER_CONNECTED_EMAIL / TIMESTAMP en tête
+    public String[] fields() {
+        return fields.clone();
+    }
+
+    // Champs obligatoires (requiredFields) présents sur la ligne
+    public boolean accepts(LogLineScanner line) {
+        return required.test(line);
+    }
+
+    // Prédicat de chaque compteur, indexé par compteur global
+    public LinePredicate[] counters() {
+        return counters.clone();
+    }
+
+    public int counterCount() {
+        return counters.length;
+    }
+
+    /**
+     * Indice global du compteur "compteur" (premier jeu de règles qui le déclare) ou "jeu.compteur", -1 si inconnu.
+     */
+    public int counterIndex(String name) {
+        for (int c = 0; c < counters.length; c++) {
+            String key = stateKeys.get(c);
+            if (key.equals(name) || key.endsWith("." + name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    public DistinctSketch[] distinctSketches() {
+        return distinctSketches.clone();
+    }
+
+    public QuantileSketch[] quantileSketches() {
+        return quantileSketches.clone();
+    }
+
+    // Store vide avec les compteurs et sketches de ces règles
+    public ProfileStore newStore() {
+        int[] precisions = new int[distinctSketches.length];
+        for (int s = 0; s < precisions.length; s++) {
+            precisions[s] = distinctSketches[s].precision();
+        }
+        double[] compressions = new double[quantileSketches.length];
+        for (int s = 0; s < compressions.length; s++) {
+            compressions[s] = quantileSketches[s].compression();
+        }
+        return new ProfileStore(counters.length, precisions, compressions);
+    }
+
+    /**
+     * "jeu.compteur", "jeu.sketch:distinct/p", "jeu.sketch:quantiles/c" dans l'ordre des indices globaux :
+     * identifie la forme d'un état persisté.
+     */
+    public List<String> stateKeys() {
+        return stateKeys;
+    }
+
+    public List<RuleSet> ruleSets() {
+        return ruleSets;
+    }
+}
@@ -0,0 +1,425 @@
+package org.example.aggregation.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.example.aggregation.sketch.HyperLogLogColumn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compilation d'un fichier de règles en prédicats. Les champs de log référencés reçoivent un indice
+ * dans le scanner commun, les compteurs et les sketches un indice global.
+ */
+class RuleCompiler {
+
+    private static final int DEFAULT_PRECISION = 6;      // 64 registres : 64 octets par utilisateur
+    private static final double DEFAULT_COMPRESSION = 50; // au plus 101 centroïdes (~1,2 Ko) par utilisateur
+    private static final double[] DEFAULT_QUANTILES = {0.5, 0.9, 0.99};
+
+    private static final Set<String> FIELD_OPERATORS =
+            Set.of("field", "equals", "equalsIgnoreCase", "in", "startsWith", "exists", "gt", "gte", "lt", "lte");
+
+    private final Map<String, Integer> fieldSlots = new LinkedHashMap<>();
+    private final List<LinePredicate> counters = new ArrayList<>();
+    private final List<String> counterKeys = new ArrayList<>();
+    private final List<ProfileRules.DistinctSketch> distinctSketches = new ArrayList<>();
+    private final List<String> distinctKeys = new ArrayList<>();
+    private final List<ProfileRules.QuantileSketch> quantileSketches = new ArrayList<>();
+    private final List<String> quantileKeys = new ArrayList<>();
+
+    RuleCompiler() {
+        slot("email");
+        slot("userConnected.email");
+        slot("@timestamp");
+    }
+
+    ProfileRules compile(JsonNode root) {
+        LinePredicate required = line -> true;
+        for (JsonNode field : root.path("requiredFields")) {
+            int slot = slot(field.asText());
+            required = required.and(line -> line.has(slot));
+        }
+
+        JsonNode ruleSetNodes = root.path("ruleSets");
+        if (!ruleSetNodes.isArray() || ruleSetNodes.isEmpty()) {
+            throw invalid("au moins un jeu de règles (ruleSets) est requis");
+        }
+
+        List<RuleSet> ruleSets = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (JsonNode node : ruleSetNodes) {
+            RuleSet ruleSet = compileRuleSet(node, ruleSets.isEmpty());
+            if (!names.add(ruleSet.name())) {
+                throw invalid("jeu de règles en double : " + ruleSet.name());
+            }
+            ruleSets.add(ruleSet);
+        }
+
+        List<String> stateKeys = new ArrayList<>(counterKeys);
+        stateKeys.addAll(distinctKeys);
+        stateKeys.addAll(quantileKeys);
+        return new ProfileRules(fieldSlots.keySet().toArray(String[]::new), required,
+                counters.toArray(LinePredicate[]::new),
+                distinctSketches.toArray(ProfileRules.DistinctSketch[]::new),
+                quantileSketches.toArray(ProfileRules.QuantileSketch[]::new),
+                stateKeys, ruleSets);
+    }
+
+    private RuleSet compileRuleSet(JsonNode node, boolean first) {
+        String name = requiredText(node, "name");
+        String output = node.path("output").asText(first ? "profiles" : "profiles-" + name);
+
+        // compteurs : prédicat sur la ligne -> +1
+        Map<String, Integer> localCounters = new LinkedHashMap<>();
+        for (JsonNode counter : node.path("counters")) {
+            String counterName = requiredText(counter, "name");
+            if (localCounters.containsKey(counterName)) {
+                throw invalid(name + " : compteur en double " + counterName);
+            }
+            localCounters.put(counterName, counters.size());
+            counters.add(compileLine(counter.path("when"), name + "." + counterName));
+            counterKeys.add(name + "." + counterName);
+        }
+
+        // classifications : cas évalués dans l'ordre sur les compteurs du jeu
+        Map<String, RuleSet.Classification> classifications = new LinkedHashMap<>();
+        for (JsonNode classification : node.path("classifications")) {
+            String classificationName = requiredText(classification, "name");
+            List<String> labels = new ArrayList<>();
+            labels.add(classification.path("default").asText("NONE"));
+            List<CounterPredicate[]> cases = new ArrayList<>();
+            for (JsonNode c : classification.path("cases")) {
+                labels.add(requiredText(c, "label"));
+                List<CounterPredicate> conditions = new ArrayList<>();
+                for (JsonNode condition : c.path("when")) {
+                    conditions.add(compileCounters(condition, localCounters, name + "." + classificationName));
+                }
+                cases.add(conditions.toArray(CounterPredicate[]::new));
+            }
+            if (labels.size() > 256) {
+                throw invalid(name + "." + classificationName + " : 255 cas au plus");
+            }
+            classifications.put(classificationName, new RuleSet.Classification(classificationName,
+                    labels.toArray(String[]::new), cases.toArray(CounterPredicate[][]::new)));
+        }
+
+        // sketches : valeurs distinctes ou quantiles, taille fixe par utilisateur
+        Map<String, List<RuleSet.Field>> sketches = new LinkedHashMap<>();
+        for (JsonNode sketch : node.path("sketches")) {
+            String sketchName = requiredText(sketch, "name");
+            if (localCounters.containsKey(sketchName) || classifications.containsKey(sketchName)
+                    || sketches.containsKey(sketchName)) {
+                throw invalid(name + " : nom en double " + sketchName);
+            }
+            sketches.put(sketchName, compileSketch(sketch, name + "." + sketchName));
+        }
+
+        // ordre des champs de sortie : explicite, ou compteurs, classifications puis sketches
+        List<String> order = new ArrayList<>();
+        if (node.has("fields")) {
+            node.get("fields").forEach(f -> order.add(f.asText()));
+        } else {
+            order.addAll(localCounters.keySet());
+            order.addAll(classifications.keySet());
+            order.addAll(sketches.keySet());
+        }
+        List<RuleSet.Field> fields = new ArrayList<>();
+        for (String field : order) {
+            if (localCounters.containsKey(field)) {
+                fields.add(new RuleSet.Field(field, RuleSet.Kind.COUNTER, localCounters.get(field), null, 0));
+            } else if (classifications.containsKey(field)) {
+                fields.add(new RuleSet.Field(field, RuleSet.Kind.CLASSIFICATION, -1, classifications.get(field), 0));
+            } else if (sketches.containsKey(field)) {
+                fields.addAll(sketches.get(field));
+            } else {
+                throw invalid(name + " : champ de sortie inconnu " + field);
+            }
+        }
+        return new RuleSet(name, output, fields);
+    }
+
+    /**
+     * {"name": "distinctEndpoints", "distinct": ["controller", "method"], "precision": 6}
+     * ou {"name": "minPrice", "quantiles": "query.minPrice", "at": [0.5, 0.99], "compression": 20},
+     * avec un "when" optionnel sur la ligne.
+     */
+    private List<RuleSet.Field> compileSketch(JsonNode node, String where) {
+        String name = node.get("name").asText();
+        LinePredicate when = compileLine(node.path("when"), where);
+
+        if (node.has("distinct")) {
+            JsonNode distinct = node.get("distinct");
+            List<Integer> slots = new ArrayList<>();
+            if (distinct.isArray()) {
+                distinct.forEach(f -> slots.add(slot(f.asText())));
+            } else {
+                slots.add(slot(distinct.asText()));
+            }
+            if (slots.isEmpty()) {
+                throw invalid(where + " : aucun champ pour distinct");
+            }
+            int precision = node.path("precision").asInt(DEFAULT_PRECISION);
+            if (precision < HyperLogLogColumn.MIN_PRECISION || precision > HyperLogLogColumn.MAX_PRECISION) {
+                throw invalid(where + " : precision hors de [4, 16] : " + precision);
+            }
+
+            int index = distinctSketches.size();
+            distinctSketches.add(new ProfileRules.DistinctSketch(
+                    slots.stream().mapToInt(Integer::intValue).toArray(), when, precision));
+            distinctKeys.add(where + ":distinct/" + precision);
+            return List.of(new RuleSet.Field(name, RuleSet.Kind.DISTINCT, index, null, 0));
+        }
+
+        if (node.has("quantiles")) {
+            int slot = slot(node.get("quantiles").asText());
+            double compression = node.path("compression").asDouble(DEFAULT_COMPRESSION);
+            if (compression < 2) {
+                throw invalid(where + " : compression < 2");
+            }
+            double[] at = DEFAULT_QUANTILES;
+            if (node.has("at")) {
+                at = new double[node.get("at").size()];
+                for (int i = 0; i < at.length; i++) {
+                    at[i] = number(node.get("at").get(i), where);
+                    if (at[i] < 0 || at[i] > 1) {
+                        throw invalid(where + " : quantile hors de [0, 1] : " + at[i]);
+                    }
+                }
+            }
+
+            int index = quantileSketches.size();
+            quantileSketches.add(new ProfileRules.QuantileSketch(slot, when, compression));
+            quantileKeys.add(where + ":quantiles/" + compression);
+            List<RuleSet.Field> fields = new ArrayList<>();
+            for (double q : at) {
+                fields.add(new RuleSet.Field(name + percentileSuffix(q), RuleSet.Kind.QUANTILE, index, null, q));
+            }
+            return fields;
+        }
+
+        throw invalid(where + " : sketch attendu (distinct ou quantiles) : " + node);
+    }
+
+    // ---------------------------------------------------------------- conditions sur la ligne
+
+    private LinePredicate compileLine(JsonNode node, String where) {
+        if (node.isMissingNode() || node.isNull()) {
+            return line -> true;
+        }
+        if (node.has("all")) {
+            LinePredicate[] parts = compileLineList(node.get("all"), where);
+            return line -> {
+                for (LinePredicate p : parts) {
+                    if (!p.test(line)) return false;
+                }
+                return true;
+            };
+        }
+        if (node.has("any")) {
+            LinePredicate[] parts = compileLineList(node.get("any"), where);
+            return line -> {
+                for (LinePredicate p : parts) {
+                    if (p.test(line)) return true;
+                }
+                return false;
+            };
+        }
+        if (node.has("not")) {
+            LinePredicate inner = compileLine(node.get("not"), where);
+            return line -> !inner.test(line);
+        }
+        if (node.has("field")) {
+            return compileField(node, where);
+        }
+        throw invalid(where + " : condition attendue (all, any, not ou field) : " + node);
+    }
+
+    private LinePredicate[] compileLineList(JsonNode nodes, String where) {
+        List<LinePredicate> parts = new ArrayList<>();
+        for (JsonNode node : nodes) {
+            parts.add(compileLine(node, where));
+        }
+        return parts.toArray(LinePredicate[]::new);
+    }
+
+    // Opérateurs d'une même condition combinés en ET : {"field": "query.minPrice", "gte": 50, "lt": 100}
+    private LinePredicate compileField(JsonNode node, String where) {
+        int slot = slot(node.get("field").asText());
+        LinePredicate predicate = null;
+
+        Iterator<String> names = node.fieldNames();
+        while (names.hasNext()) {
+            String op = names.next();
+            if (!FIELD_OPERATORS.contains(op)) {
+                throw invalid(where + " : opérateur inconnu " + op);
+            }
+            if (op.equals("field")) continue;
+
+            JsonNode value = node.get(op);
+            LinePredicate p = switch (op) {
+                case "equals" -> {
+                    byte[] expected = utf8(value.asText());
+                    yield line -> line.contentEquals(slot, expected);
+                }
+                case "equalsIgnoreCase" -> {
+                    byte[] expected = ascii(value.asText(), where);
+                    yield line -> line.equalsIgnoreCase(slot, expected);
+                }
+                case "in" -> {
+                    List<byte[]> values = new ArrayList<>();
+                    value.forEach(v -> values.add(ascii(v.asText(), where)));
+                    byte[][] expected = values.toArray(byte[][]::new);
+                    yield line -> {
+                        for (byte[] e : expected) {
+                            if (line.equalsIgnoreCase(slot, e)) return true;
+                        }
+                        return false;
+                    };
+                }
+                case "startsWith" -> {
+                    byte[] prefix = utf8(value.asText());
+                    yield line -> line.startsWith(slot, prefix);
+                }
+                case "exists" -> {
+                    boolean expected = value.asBoolean();
+                    yield line -> line.has(slot) == expected;
+                }
+                // valeur absente ou non numérique : NaN, toutes les comparaisons sont fausses
+                case "gt" -> {
+                    double bound = number(value, where);
+                    yield line -> line.doubleValue(slot) > bound;
+                }
+                case "gte" -> {
+                    double bound = number(value, where);
+                    yield line -> line.doubleValue(slot) >= bound;
+                }
+                case "lt" -> {
+                    double bound = number(value, where);
+                    yield line -> line.doubleValue(slot) < bound;
+                }
+                case "lte" -> {
+                    double bound = number(value, where);
+                    yield line -> line.doubleValue(slot) <= bound;
+                }
+                default -> throw invalid(where + " : opérateur inconnu " + op);
+            };
+            predicate = predicate == null ? p : predicate.and(p);
+        }
+        if (predicate == null) {
+            // {"field": "x"} seul : présence du champ
+            predicate = line -> line.has(slot);
+        }
+        return predicate;
+    }
+
+    // ---------------------------------------------------------------- conditions sur les compteurs
+
+    /**
+     * {"counter": "a", "greaterThan": "b"}, {"counter": "a", "min": 10, "max": 20}
+     * ou {"ratio": "a", "over": ["a", "b"], "min": 0.6} (faux si le dénominateur est nul).
+     */
+    private CounterPredicate compileCounters(JsonNode node, Map<String, Integer> localCounters, String where) {
+        if (node.has("ratio")) {
+            int numerator = counter(node.get("ratio").asText(), localCounters, where);
+            JsonNode over = node.path("over");
+            if (!over.isArray() || over.isEmpty()) {
+                throw invalid(where + " : ratio sans dénominateur (over)");
+            }
+            int[] denominator = counters(over, localCounters, where);
+            double min = node.path("min").asDouble(Double.NEGATIVE_INFINITY);
+            double max = node.path("max").asDouble(Double.POSITIVE_INFINITY);
+            return counters -> {
+                long total = 0;
+                for (int c : denominator) {
+                    total += counters.applyAsInt(c);
+                }
+                if (total == 0) return false;
+                double ratio = (double) counters.applyAsInt(numerator) / total;
+                return ratio >= min && ratio <= max;
+            };
+        }
+        if (node.has("counter")) {
+            int counter = counter(node.get("counter").asText(), localCounters, where);
+            CounterPredicate predicate = counters -> true;
+            if (node.has("greaterThan")) {
+                int other = counter(node.get("greaterThan").asText(), localCounters, where);
+                predicate = and(predicate, counters -> counters.applyAsInt(counter) > counters.applyAsInt(other));
+            }
+            if (node.has("min")) {
+                long min = node.get("min").asLong();
+                predicate = and(predicate, counters -> counters.applyAsInt(counter) >= min);
+            }
+            if (node.has("max")) {
+                long max = node.get("max").asLong();
+                predicate = and(predicate, counters -> counters.applyAsInt(counter) <= max);
+            }
+            return predicate;
+        }
+        throw invalid(where + " : condition attendue (counter ou ratio) : " + node);
+    }
+
+    private static CounterPredicate and(CounterPredicate a, CounterPredicate b) {
+        return counters -> a.test(counters) && b.test(counters);
+    }
+
+    private static int counter(String name, Map<String, Integer> localCounters, String where) {
+        Integer counter = localCounters.get(name);
+        if (counter == null) {
+            throw invalid(where + " : compteur inconnu " + name);
+        }
+        return counter;
+    }
+
+    private static int[] counters(JsonNode names, Map<String, Integer> localCounters, String where) {
+        int[] result = new int[names.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counter(names.get(i).asText(), localCounters, where);
+        }
+        return result;
+    }
+
+    // ---------------------------------------------------------------- utilitaires
+
+    private int slot(String field) {
+        return fieldSlots.computeIfAbsent(field, f -> fieldSlots.size());
+    }
+
+    // 0.5 -> "P50", 0.999 -> "P99_9"
+    private static String percentileSuffix(double q) {
+        return "P" + BigDecimal.valueOf(q).movePointRight(2).stripTrailingZeros().toPlainString().replace('.', '_');
+    }
+
+    private static String requiredText(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        if (value == null || !value.isTextual() || value.asText().isEmpty()) {
+            throw invalid("attribut " + name + " manquant : " + node);
+        }
+        return value.asText();
+    }
+
+    private static double number(JsonNode value, String where) {
+        if (!value.isNumber()) {
+            throw invalid(where + " : nombre attendu, reçu " + value);
+        }
+        return value.asDouble();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // equalsIgnoreCase du scanner ne replie que l'ASCII
+    private static byte[] ascii(String value, String where) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7F) {
+                throw invalid(where + " : equalsIgnoreCase / in n'acceptent que de l'ASCII : " + value);
+            }
+        }
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException("Règles de profil invalides : " + message);
+    }
+}
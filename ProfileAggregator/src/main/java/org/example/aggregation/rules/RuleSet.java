@@ -0,0 +1,115 @@
+package org.example.aggregation.rules;
+
+import org.example.aggregation.ProfileStore;
+import org.example.aggregation.SnapshotColumn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Jeu de règles compilé : ses compteurs et sketches (indices globaux dans {@link ProfileRules}),
+ * ses classifications et l'ordre des champs de sortie. Immuable, partagé entre threads.
+ */
+public final class RuleSet {
+
+    /**
+     * Classification : le premier cas dont toutes les conditions sont vraies donne le libellé,
+     * sinon le libellé par défaut (code 0).
+     */
+    public record Classification(String name, String[] labels, CounterPredicate[][] cases) {
+
+        public int classify(IntUnaryOperator counters) {
+            for (int i = 0; i < cases.length; i++) {
+                if (matchesAll(cases[i], counters)) return i + 1;
+            }
+            return 0;
+        }
+
+        private static boolean matchesAll(CounterPredicate[] conditions, IntUnaryOperator counters) {
+            for (CounterPredicate condition : conditions) {
+                if (!condition.test(counters)) return false;
+            }
+            return true;
+        }
+    }
+
+    enum Kind {
+        COUNTER,
+        CLASSIFICATION,
+        DISTINCT,
+        QUANTILE
+    }
+
+    /**
+     * Champ de sortie. index : compteur global (COUNTER) ou sketch global (DISTINCT, QUANTILE) ;
+     * quantile : rang demandé (QUANTILE).
+     */
+    record Field(String name, Kind kind, int index, Classification classification, double quantile) {
+    }
+
+    private final String name;
+    private final String output;
+    private final List<Field> fields;
+
+    RuleSet(String name, String output, List<Field> fields) {
+        this.name = name;
+        this.output = output;
+        this.fields = List.copyOf(fields);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // Nom de base des fichiers produits (<output>.json, <output>.bin)
+    public String output() {
+        return output;
+    }
+
+    public List<String> fieldNames() {
+        return fields.stream().map(Field::name).toList();
+    }
+
+    // Colonnes de sortie d'un store complet, dans l'ordre des champs
+    public List<SnapshotColumn> columns(ProfileStore store) {
+        return columns(store::get, store);
+    }
+
+    /**
+     * Colonnes des compteurs et classifications uniquement (sans sketches), counterOf donnant la valeur
+     * d'un compteur global pour un id : profils par fenêtre.
+     */
+    public List<SnapshotColumn> counterColumns(IntBinaryOperator counterOf) {
+        return columns(counterOf, null);
+    }
+
+    private List<SnapshotColumn> columns(IntBinaryOperator counterOf, ProfileStore sketches) {
+        List<SnapshotColumn> columns = new ArrayList<>(fields.size());
+        for (Field field : fields) {
+            int index = field.index();
+            switch (field.kind()) {
+                case COUNTER -> columns.add(SnapshotColumn.counter(field.name(), id -> counterOf.applyAsInt(id, index)));
+                case CLASSIFICATION -> {
+                    Classification classification = field.classification();
+                    columns.add(SnapshotColumn.code(field.name(), classification.labels(),
+                            id -> classification.classify(c -> counterOf.applyAsInt(id, c))));
+                }
+                case DISTINCT -> {
+                    if (sketches != null) {
+                        columns.add(SnapshotColumn.counter(field.name(),
+                                id -> (int) Math.min(Integer.MAX_VALUE, sketches.distinct(id, index))));
+                    }
+                }
+                case QUANTILE -> {
+                    if (sketches != null) {
+                        double q = field.quantile();
+                        columns.add(SnapshotColumn.decimal(field.name(), id -> sketches.quantile(id, index, q)));
+                    }
+                }
+            }
+        }
+        return columns;
+    }
+}
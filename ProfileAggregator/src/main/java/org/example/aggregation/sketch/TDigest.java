@@ -0,0 +1,173 @@
+package org.example.aggregation.sketch;
+
+import java.util.Arrays;
+
+/**
+ * t-digest "merging" (Dunning) de taille bornée : les valeurs sont ajoutées dans un tampon puis fusionnées
+ * avec les centroïdes triés selon la fonction d'échelle k1, qui garde des centroïdes fins aux extrémités.
+ * Après compression il reste au plus compression + 1 centroïdes : deux tableaux de taille fixe
+ * (2 * compression + 1) suffisent, quel que soit le nombre de valeurs.
+ */
+public final class TDigest {
+
+    // État sérialisable (centroïdes triés)
+    public record State(double min, double max, double[] means, int[] weights) {
+    }
+
+    private final double compression;
+    private final double[] means;
+    private final int[] weights;
+    private int count;    // centroïdes + tampon
+    private int merged;   // [0, merged) triés et compressés
+    private long total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest(double compression) {
+        if (compression < 2) {
+            throw new IllegalArgumentException("Compression t-digest trop faible : " + compression);
+        }
+        this.compression = compression;
+        int capacity = 2 * (int) Math.ceil(compression) + 1;
+        this.means = new double[capacity];
+        this.weights = new int[capacity];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    public void merge(TDigest other) {
+        for (int i = 0; i < other.count; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void merge(State state) {
+        for (int i = 0; i < state.means().length; i++) {
+            add(state.means()[i], state.weights()[i]);
+        }
+        min = Math.min(min, state.min());
+        max = Math.max(max, state.max());
+    }
+
+    public State state() {
+        compress();
+        return new State(min, max, Arrays.copyOf(means, count), Arrays.copyOf(weights, count));
+    }
+
+    public long size() {
+        return total;
+    }
+
+    /**
+     * Quantile q dans [0, 1], interpolé entre centres de centroïdes ; NaN si le digest est vide.
+     * Les centroïdes de poids 1 sont des valeurs observées et sont restitués tels quels (petits effectifs exacts).
+     */
+    public double quantile(double q) {
+        if (total == 0) return Double.NaN;
+        compress();
+        if (count == 1) return means[0];
+
+        double index = q * total;
+        if (index < 1) return min;
+        if (index > total - 1) return max;
+
+        double firstHalf = weights[0] / 2.0;
+        if (weights[0] > 1 && index < firstHalf) {
+            return min + (index - 1) / (firstHalf - 1) * (means[0] - min);
+        }
+        double lastHalf = weights[count - 1] / 2.0;
+        if (weights[count - 1] > 1 && total - index <= lastHalf) {
+            return max - (total - index - 1) / (lastHalf - 1) * (max - means[count - 1]);
+        }
+
+        double cumulative = firstHalf;
+        for (int i = 0; i < count - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2.0;
+            if (cumulative + step > index) {
+                double leftUnit = 0;
+                if (weights[i] == 1) {
+                    if (index - cumulative < 0.5) return means[i];
+                    leftUnit = 0.5;
+                }
+                double rightUnit = 0;
+                if (weights[i + 1] == 1) {
+                    if (cumulative + step - index <= 0.5) return means[i + 1];
+                    rightUnit = 0.5;
+                }
+                double toLeft = index - cumulative - leftUnit;
+                double toRight = cumulative + step - index - rightUnit;
+                return (means[i] * toRight + means[i + 1] * toLeft) / (toLeft + toRight);
+            }
+            cumulative += step;
+        }
+        return max;
+    }
+
+    private void add(double mean, int weight) {
+        if (count == means.length) {
+            compress();
+        }
+        means[count] = mean;
+        weights[count] = weight;
+        count++;
+        total += weight;
+    }
+
+    private void compress() {
+        if (count == merged) return;
+        sort();
+
+        // fusion gloutonne : un centroïde couvre au plus une unité de k1
+        int out = 0;
+        long soFar = 0;
+        double currentMean = means[0];
+        long currentWeight = weights[0];
+        double limit = total * nextQuantileLimit(0);
+        for (int i = 1; i < count; i++) {
+            if (soFar + currentWeight + weights[i] <= limit) {
+                currentWeight += weights[i];
+                currentMean += (means[i] - currentMean) * weights[i] / currentWeight;
+            } else {
+                means[out] = currentMean;
+                weights[out] = (int) currentWeight;
+                out++;
+                soFar += currentWeight;
+                limit = total * nextQuantileLimit((double) soFar / total);
+                currentMean = means[i];
+                currentWeight = weights[i];
+            }
+        }
+        means[out] = currentMean;
+        weights[out] = (int) currentWeight;
+        count = merged = out + 1;
+    }
+
+    // k1(q) = compression / 2π · asin(2q - 1) ; quantile atteint en avançant d'une unité de k
+    private double nextQuantileLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+        if (k >= compression / 4) return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    // Tri par insertion : quelques dizaines d'éléments, dont un préfixe déjà trié
+    private void sort() {
+        for (int i = Math.max(1, merged); i < count; i++) {
+            double m = means[i];
+            int w = weights[i];
+            int j = i - 1;
+            while (j >= 0 && means[j] > m) {
+                means[j + 1] = means[j];
+                weights[j + 1] = weights[j];
+                j--;
+            }
+            means[j + 1] = m;
+            weights[j + 1] = w;
+        }
+    }
+}
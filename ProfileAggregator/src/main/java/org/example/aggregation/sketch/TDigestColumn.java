@@ -0,0 +1,75 @@
+package org.example.aggregation.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Un {@link TDigest} par utilisateur, indexé par id. Le digest n'est alloué qu'à la première valeur :
+ * les utilisateurs sans valeur ne coûtent qu'une référence nulle.
+ */
+public final class TDigestColumn {
+
+    private final double compression;
+    private TDigest[] digests;
+
+    public TDigestColumn(double compression, int capacity) {
+        this.compression = compression;
+        this.digests = new TDigest[capacity];
+    }
+
+    public double compression() {
+        return compression;
+    }
+
+    public void add(int id, double value) {
+        digestOf(id).add(value);
+    }
+
+    // NaN si l'utilisateur n'a aucune valeur
+    public double quantile(int id, double q) {
+        TDigest digest = digests[id];
+        return digest != null ? digest.quantile(q) : Double.NaN;
+    }
+
+    public void merge(int id, TDigestColumn other, int otherId) {
+        TDigest digest = other.digests[otherId];
+        if (digest != null) {
+            digestOf(id).merge(digest);
+        }
+    }
+
+    // État d'un utilisateur (persistance de l'état incrémental), null s'il n'a aucune valeur
+    public TDigest.State state(int id) {
+        TDigest digest = digests[id];
+        return digest != null ? digest.state() : null;
+    }
+
+    public void merge(int id, TDigest.State state) {
+        if (state != null) {
+            digestOf(id).merge(state);
+        }
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > digests.length) {
+            digests = Arrays.copyOf(digests, capacity);
+        }
+    }
+
+    public long heapBytes() {
+        long bytes = 8L * digests.length;
+        int centroids = 2 * (int) Math.ceil(compression) + 1;
+        for (TDigest digest : digests) {
+            if (digest != null) bytes += 64 + 12L * centroids;
+        }
+        return bytes;
+    }
+
+    private TDigest digestOf(int id) {
+        TDigest digest = digests[id];
+        if (digest == null) {
+            digest = new TDigest(compression);
+            digests[id] = digest;
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.daemon;
+
+import org.example.aggregation.LogLineReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Suivi d'un fichier de logs en cours d'écriture (tail -F) : chaque appel à {@link #poll} lit les lignes
+ * complètes ajoutées depuis le précédent. Une ligne en cours d'écriture est relue à l'appel suivant.
+ *
+ * Rotation logback (api.log renommé puis recréé) : le canal ouvert sur l'ancien fichier reste valide,
+ * il est lu jusqu'au bout avant de passer au nouveau. Fichier tronqué : reprise à l'offset 0.
+ * Une instance n'est pas thread-safe : un seul thread d'ingestion.
+ */
+public class LogTailer implements AutoCloseable {
+
+    private static final int READ_BLOCK = 4 << 20; // 4 Mo lus au plus par itération
+
+    private final Path file;
+    private final LogLineReader reader = new LogLineReader();
+    private final ByteBuffer block = ByteBuffer.allocate(READ_BLOCK);
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long offset;
+
+    public LogTailer(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Démarre à startOffset (début de ligne) sur le fichier courant, typiquement après un chargement initial.
+     */
+    public void open(long startOffset) throws IOException {
+        close();
+        if (!Files.exists(file)) return;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileKey = fileKey(file);
+        offset = Math.min(startOffset, channel.size());
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Transmet au handler les lignes complètes disponibles et retourne le nombre d'octets consommés.
+     */
+    public long poll(LogLineReader.LineHandler handler) throws IOException {
+        long consumed = 0;
+        if (channel == null) {
+            if (!Files.exists(file)) return 0;
+            open(0);
+        }
+
+        Object currentKey = fileKeyOrNull(file);
+        if (currentKey != null && !currentKey.equals(fileKey)) {
+            // rotation : fin de l'ancien fichier (plus personne n'y écrit), puis le nouveau depuis 0
+            consumed += drain(handler, true);
+            open(0);
+        } else if (channel.size() < offset) {
+            offset = 0; // tronqué
+        }
+
+        consumed += drain(handler, false);
+        return consumed;
+    }
+
+    // Lit [offset, taille) par blocs ; sans toEof, s'arrête à la dernière fin de ligne
+    private long drain(LogLineReader.LineHandler handler, boolean toEof) throws IOException {
+        long start = offset;
+        while (true) {
+            block.clear();
+            int n = channel.read(block, offset);
+            if (n <= 0) break;
+
+            int end = n;
+            if (!toEof || n == block.capacity()) {
+                end = lastNewline(block, n) + 1;
+                if (end == 0) {
+                    if (n < block.capacity()) break; // ligne en cours d'écriture
+                    end = n; // ligne plus longue qu'un bloc : lue telle quelle
+                }
+            }
+            reader.read(block.duplicate().position(0).limit(end), handler);
+            offset += end;
+            if (n < block.capacity()) break;
+        }
+        return offset - start;
+    }
+
+    private static int lastNewline(ByteBuffer buf, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buf.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static Object fileKey(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+
+    // null si le fichier a disparu (entre le renommage et la recréation par logback)
+    private static Object fileKeyOrNull(Path file) throws IOException {
+        try {
+            return fileKey(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
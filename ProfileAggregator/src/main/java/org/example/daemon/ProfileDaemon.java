@@ -0,0 +1,284 @@
+package org.example.daemon;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.example.aggregation.LogLineAggregator;
+import org.example.aggregation.ParallelLogAggregator;
+import org.example.aggregation.ProfileStore;
+import org.example.aggregation.SnapshotColumn;
+import org.example.aggregation.rules.ProfileRules;
+import org.example.aggregation.rules.RuleSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Mode démon (sans interface) : charge api.log en parallèle, puis le suit en continu et publie les profils
+ * modifiés dans un {@link ProfileIndex} servi par {@link ProfileHttpApi}.
+ *
+ * Un seul thread d'ingestion possède le ProfileStore (non thread-safe) ; après chaque lot, il encode en JSON
+ * les profils modifiés et les publie. Les requêtes HTTP ne lisent que l'index publié : elles ne bloquent
+ * jamais l'ingestion et l'ingestion ne les bloque pas.
+ */
+public class ProfileDaemon implements AutoCloseable {
+
+    private static final int TOP_SIZE = 100;
+    private static final long POLL_MILLIS = 100;
+
+    private final Path logFile;
+    private final ProfileRules rules;
+    private final ProfileIndex index = new ProfileIndex();
+    private final ProfileHttpApi api;
+    private final LogTailer tailer;
+    private final LogLineAggregator aggregator;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private ProfileStore store;
+    private List<List<SnapshotColumn>> columns;
+    private final BitSet dirty = new BitSet();
+    private final int[][] topIds;
+
+    private volatile boolean running;
+    private volatile long linesIngested;
+    // empreinte du ProfileStore au dernier lot, lue par /status sans toucher au store
+    private volatile long storeHeapBytes;
+    private volatile long ingestErrors;
+    private volatile String lastIngestError;
+    private Thread ingestThread;
+    private long batchSeq;
+
+    public ProfileDaemon(Path logFile, ProfileRules rules, int port) {
+        this.logFile = logFile;
+        this.rules = rules;
+        this.tailer = new LogTailer(logFile);
+        this.aggregator = new LogLineAggregator(rules);
+        this.topIds = new int[rules.counterCount()][0];
+        this.api = new ProfileHttpApi(this, port);
+    }
+
+    public void start() throws IOException {
+        bootstrap();
+        running = true;
+        ingestThread = Thread.ofPlatform().name("profile-ingest").start(this::ingestLoop);
+        api.start();
+    }
+
+    public ProfileIndex index() {
+        return index;
+    }
+
+    public ProfileRules rules() {
+        return rules;
+    }
+
+    public long offset() {
+        return tailer.offset();
+    }
+
+    public long linesIngested() {
+        return linesIngested;
+    }
+
+    public long ingestErrors() {
+        return ingestErrors;
+    }
+
+    // Dernière erreur d'ingestion (ligne rejetée, échec de lecture ou de publication), null s'il n'y en a pas eu
+    public String lastIngestError() {
+        return lastIngestError;
+    }
+
+    public long storeHeapBytes() {
+        return storeHeapBytes;
+    }
+
+    public int port() {
+        return api.port();
+    }
+
+    // Chargement initial en parallèle jusqu'à la dernière ligne complète, puis suivi à partir de là
+    private void bootstrap() throws IOException {
+        long end = 0;
+        if (Files.exists(logFile)) {
+            end = lastCompleteLineEnd(logFile);
+            store = new ParallelLogAggregator(rules).aggregate(logFile, 0, end);
+        } else {
+            store = rules.newStore();
+        }
+        tailer.open(end);
+
+        columns = new ArrayList<>();
+        for (RuleSet ruleSet : rules.ruleSets()) {
+            columns.add(ruleSet.columns(store));
+        }
+        dirty.set(0, store.size());
+        publish();
+    }
+
+    private void ingestLoop() {
+        while (running) {
+            try {
+                long read = tailer.poll((buf, off, len) -> {
+                    int id;
+                    try {
+                        id = aggregator.accumulate(store, buf, off, len);
+                    } catch (RuntimeException e) {
+                        // ligne ignorée : relever l'exception ferait relire tout le bloc au prochain poll
+                        failed("Ligne ignorée (bloc lu à l'offset " + tailer.offset() + ")", e);
+                        return;
+                    }
+                    if (id >= 0) {
+                        dirty.set(id);
+                        linesIngested++;
+                    }
+                });
+                if (!dirty.isEmpty()) {
+                    publish();
+                }
+                if (read == 0) {
+                    Thread.sleep(POLL_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                // le thread continue : une erreur de publication est retentée au lot suivant (dirty conservé)
+                failed("Ingestion de " + logFile, e);
+                try {
+                    Thread.sleep(POLL_MILLIS * 10);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void failed(String context, Exception e) {
+        String message = context + " : " + e;
+        System.err.println(message);
+        if (e instanceof RuntimeException) e.printStackTrace(); // bogue plutôt qu'incident de lecture
+        lastIngestError = message;
+        ingestErrors++;
+    }
+
+    // ---------------------------------------------------------------- publication
+
+    private void publish() {
+        long seq = ++batchSeq;
+        long now = System.currentTimeMillis();
+
+        List<ProfileIndex.Profile> updated = new ArrayList<>(dirty.cardinality());
+        Map<Integer, ProfileIndex.Profile> byId = new HashMap<>();
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            ProfileIndex.Profile profile = new ProfileIndex.Profile(store.email(id), seq, now, encode(id));
+            updated.add(profile);
+            byId.put(id, profile);
+        }
+
+        Map<String, List<ProfileIndex.Profile>> rankings = new HashMap<>();
+        for (int c = 0; c < topIds.length; c++) {
+            topIds[c] = rank(c);
+            List<ProfileIndex.Profile> ranking = new ArrayList<>(topIds[c].length);
+            for (int id : topIds[c]) {
+                ProfileIndex.Profile profile = byId.get(id);
+                ranking.add(profile != null ? profile : index.get(store.email(id)));
+            }
+            rankings.put(rules.stateKeys().get(c), List.copyOf(ranking));
+        }
+
+        index.publish(seq, updated, rankings);
+        dirty.clear();
+        storeHeapBytes = store.heapBytes();
+    }
+
+    /**
+     * Classement du compteur c. Les compteurs ne font que croître : le nouveau top est forcément parmi
+     * l'ancien top et les profils modifiés par le lot, inutile de parcourir tous les utilisateurs.
+     */
+    private int[] rank(int c) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(TOP_SIZE + 1,
+                Comparator.comparingInt((Integer id) -> store.get(id, c)));
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            offer(heap, id, c);
+        }
+        for (int id : topIds[c]) {
+            if (!dirty.get(id)) offer(heap, id, c);
+        }
+
+        int[] ranking = new int[heap.size()];
+        for (int i = ranking.length - 1; i >= 0; i--) {
+            ranking[i] = heap.poll();
+        }
+        return ranking;
+    }
+
+    private void offer(PriorityQueue<Integer> heap, int id, int c) {
+        if (store.get(id, c) == 0) return;
+        if (heap.size() < TOP_SIZE) {
+            heap.add(id);
+        } else if (store.get(id, c) > store.get(heap.peek(), c)) {
+            heap.poll();
+            heap.add(id);
+        }
+    }
+
+    // Même forme que profiles-windowed.json : premier jeu de règles à plat, les suivants dans un objet à leur nom
+    private byte[] encode(int id) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("email", store.email(id));
+            for (int r = 0; r < columns.size(); r++) {
+                if (r > 0) gen.writeObjectFieldStart(rules.ruleSets().get(r).name());
+                for (SnapshotColumn column : columns.get(r)) {
+                    column.write(gen, id);
+                }
+                if (r > 0) gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static long lastCompleteLineEnd(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            long pos = channel.size();
+            while (pos > 0) {
+                int n = (int) Math.min(buf.capacity(), pos);
+                buf.clear().limit(n);
+                channel.read(buf, pos - n);
+                for (int i = n - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') return pos - n + i + 1;
+                }
+                pos -= n;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        api.close();
+        if (ingestThread != null) {
+            ingestThread.interrupt();
+            try {
+                ingestThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        tailer.close();
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.daemon;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * API de lecture du démon, sur le HttpServer du JDK (un thread virtuel par requête) :
+ *
+ * <pre>
+ * GET /profiles/{email}                    profil courant, 404 si inconnu
+ * GET /profiles/top?by=totalReads&n=10     meilleurs profils pour un compteur (n <= 100)
+ * GET /profiles/changed?since=42&limit=500 profils modifiés après le lot 42 ; "seq" sert de since suivant
+ * GET /status                              lot courant, utilisateurs, offset, lignes ingérées, octets du store,
+ *                                          erreurs d'ingestion
+ * </pre>
+ *
+ * changed s'arrête à limit profils : la réponse porte alors "truncated": true, "seq" est le dernier lot
+ * entièrement émis et "after" l'email du dernier profil, à repasser tels quels (since=&amp;after=) pour la suite.
+ *
+ * Les profils sont servis tels qu'encodés à la publication : une lecture ne fait qu'un get dans l'index.
+ */
+public class ProfileHttpApi implements AutoCloseable {
+
+    private static final int DEFAULT_TOP = 10;
+    private static final int DEFAULT_CHANGED_LIMIT = 1000;
+
+    private final ProfileDaemon daemon;
+    private final int port;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public ProfileHttpApi(ProfileDaemon daemon, int port) {
+        this.daemon = daemon;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        // sans TCP_NODELAY, Nagle + ACK retardé ajoutent ~40 ms à chaque petite réponse (lu à la création du serveur)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/profiles", this::handleProfiles);
+        server.createContext("/status", this::handleStatus);
+        server.start();
+    }
+
+    public int port() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handleProfiles(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("Méthode non supportée"));
+                return;
+            }
+            try {
+                route(exchange);
+            } catch (NumberFormatException e) {
+                send(exchange, 400, error("Paramètre invalide : " + e.getMessage()));
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        ProfileIndex index = daemon.index();
+
+        String rest = path.length() > "/profiles/".length() ? path.substring("/profiles/".length()) : "";
+        switch (rest) {
+            case "" -> send(exchange, 404, error("Email attendu : /profiles/{email}"));
+            case "top" -> {
+                String by = query.get("by");
+                int counter = by != null ? daemon.rules().counterIndex(by) : 0;
+                if (counter < 0 || counter >= daemon.rules().counterCount()) {
+                    send(exchange, 400, error("Compteur inconnu : " + by));
+                    return;
+                }
+                int n = Math.max(0, intParam(query, "n", DEFAULT_TOP));
+                List<ProfileIndex.Profile> top = index.top(daemon.rules().stateKeys().get(counter), n);
+                send(exchange, 200, list(index.seq(), top != null ? top : List.of()));
+            }
+            case "changed" -> {
+                long since = longParam(query, "since", 0);
+                int limit = Math.max(0, intParam(query, "limit", DEFAULT_CHANGED_LIMIT));
+                send(exchange, 200, changes(index.changedSince(since, query.get("after"), limit)));
+            }
+            default -> {
+                ProfileIndex.Profile profile = index.get(URLDecoder.decode(rest, StandardCharsets.UTF_8));
+                if (profile == null) {
+                    send(exchange, 404, error("Profil inconnu"));
+                } else {
+                    send(exchange, 200, profile.json());
+                }
+            }
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String lastError = daemon.lastIngestError();
+            String body = "{\"seq\":" + daemon.index().seq()
+                    + ",\"users\":" + daemon.index().size()
+                    + ",\"offset\":" + daemon.offset()
+                    + ",\"linesIngested\":" + daemon.linesIngested()
+                    + ",\"storeHeapBytes\":" + daemon.storeHeapBytes()
+                    + ",\"ingestErrors\":" + daemon.ingestErrors()
+                    + ",\"lastIngestError\":" + (lastError != null ? quote(lastError) : "null") + "}";
+            send(exchange, 200, body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // {"seq": n, "profiles": [...]} assemblé à partir des JSON déjà encodés
+    private static byte[] list(long seq, List<ProfileIndex.Profile> profiles) {
+        return list("{\"seq\":" + seq, profiles);
+    }
+
+    // {"seq": n, "truncated": b, ("after": email,) "profiles": [...]}
+    private static byte[] changes(ProfileIndex.Changes changes) {
+        String head = "{\"seq\":" + changes.seq() + ",\"truncated\":" + changes.truncated();
+        if (changes.after() != null) head += ",\"after\":" + quote(changes.after());
+        return list(head, changes.profiles());
+    }
+
+    private static byte[] list(String head, List<ProfileIndex.Profile> profiles) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes((head + ",\"profiles\":[").getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < profiles.size(); i++) {
+            if (i > 0) out.write(',');
+            out.writeBytes(profiles.get(i).json());
+        }
+        out.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static byte[] error(String message) {
+        return ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Chaîne JSON ; les caractères de contrôle (messages d'exception) sont remplacés par des espaces
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replaceAll("\\p{Cntrl}", " ") + "\"";
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static long longParam(Map<String, String> query, String name, long defaultValue) {
+        String value = query.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.close();
+        }
+    }
+}
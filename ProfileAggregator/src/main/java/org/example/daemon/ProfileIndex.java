@@ -0,0 +1,102 @@
+package org.example.daemon;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Vue publiée des profils, lue par l'API HTTP pendant que le thread d'ingestion continue.
+ *
+ * Chaque profil est un objet immuable (JSON déjà encodé) remplacé en bloc à chaque lot : une lecture
+ * est un get dans une ConcurrentHashMap, sans verrou ni copie. Le thread d'ingestion est le seul écrivain ;
+ * les lecteurs voient chaque profil soit dans son état précédent, soit dans le nouveau.
+ */
+public class ProfileIndex {
+
+    // seq : numéro du lot qui a produit cette version du profil
+    public record Profile(String email, long seq, long updatedMillis, byte[] json) {
+    }
+
+    /**
+     * Page de changedSince. seq : dernier lot entièrement émis, à repasser en since ; si truncated,
+     * after est l'email du dernier profil émis, à repasser avec since pour reprendre dans le lot seq + 1.
+     */
+    public record Changes(List<Profile> profiles, long seq, String after, boolean truncated) {
+    }
+
+    // Clé (lot, email) : ordre de reprise de changedSince
+    private record Key(long seq, String email) {
+    }
+
+    private static final Comparator<Key> ORDER = Comparator.comparingLong(Key::seq).thenComparing(Key::email);
+
+    private final ConcurrentHashMap<String, Profile> profiles = new ConcurrentHashMap<>();
+    // version courante de chaque profil, triée par lot : "changed since" sans parcourir tous les profils.
+    // Un profil modifié change de clé vers un lot plus récent, donc toujours après un curseur de reprise.
+    private final ConcurrentSkipListMap<Key, Profile> bySeq = new ConcurrentSkipListMap<>(ORDER);
+    private final Map<String, List<Profile>> top = new ConcurrentHashMap<>();
+
+    private volatile long seq;
+
+    public Profile get(String email) {
+        return profiles.get(email);
+    }
+
+    public long seq() {
+        return seq;
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    // n meilleurs profils pour le compteur (n borné par la taille du classement maintenu)
+    public List<Profile> top(String counter, int n) {
+        List<Profile> ranking = top.get(counter);
+        if (ranking == null) return null;
+        return ranking.subList(0, Math.min(n, ranking.size()));
+    }
+
+    public Set<String> rankedCounters() {
+        return top.keySet();
+    }
+
+    /**
+     * Profils modifiés après le lot since (après l'email after dans le lot since + 1 si after est donné),
+     * au plus limit, par lot croissant puis email.
+     */
+    public Changes changedSince(long since, String after, int limit) {
+        long current = seq; // lu avant : un lot publié pendant le parcours sera revu au prochain appel
+        Key from = new Key(since + 1, after != null ? after : "");
+        List<Profile> result = new ArrayList<>(Math.min(limit, 1024));
+        for (Profile profile : bySeq.tailMap(from, after == null).values()) {
+            if (result.size() >= limit) {
+                if (result.isEmpty()) return new Changes(result, since, after, true);
+                // le lot du dernier profil émis n'est peut-être pas complet : reprise juste après lui
+                Profile last = result.get(result.size() - 1);
+                return new Changes(result, last.seq() - 1, last.email(), true);
+            }
+            result.add(profile);
+        }
+        return new Changes(result, Math.max(current, since), null, false);
+    }
+
+    // ---------------------------------------------------------------- écriture (thread d'ingestion)
+
+    void publish(long batchSeq, List<Profile> updated, Map<String, List<Profile>> rankings) {
+        for (Profile profile : updated) {
+            Profile previous = profiles.put(profile.email(), profile);
+            // nouvelle clé d'abord : un lecteur en cours voit toujours au moins une des deux versions
+            bySeq.put(new Key(profile.seq(), profile.email()), profile);
+            if (previous != null && previous.seq() != profile.seq()) {
+                bySeq.remove(new Key(previous.seq(), previous.email()));
+            }
+        }
+        top.putAll(rankings);
+        seq = batchSeq;
+    }
+}
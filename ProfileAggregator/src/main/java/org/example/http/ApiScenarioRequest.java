@@ -1,4 +1,15 @@
 package org.example.http;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public record ApiScenarioRequest(String email, String password, OperationType operationType, int count) {
+
+    private static final Pattern SEEDED_EMAIL = Pattern.compile("^user(\\d+)@");
+
+    // Comptes de l'init MongoDB : userN@example.com / passwordN ; null pour un autre email
+    public static String seededPassword(String email) {
+        Matcher m = SEEDED_EMAIL.matcher(email);
+        return m.find() ? "password" + m.group(1) : null;
+    }
 }
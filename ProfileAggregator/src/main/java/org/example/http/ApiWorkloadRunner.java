@@ -3,41 +3,369 @@ package org.example.http;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.math.BigDecimal;
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Rejoue un scénario contre l'API : chaque utilisateur simulé exécute ses opérations dans l'ordre du scénario,
+ * sur un thread virtuel, tous les utilisateurs en parallèle. Le nombre de requêtes HTTP en vol,
+ * tous utilisateurs confondus, est borné par maxInFlight.
+ *
+ * {@link #runOpenModel} envoie au contraire les requêtes à débit constant, sans attendre les réponses :
+ * la latence est mesurée depuis l'instant d'envoi prévu, ce qui corrige l'omission coordonnée.
+ *
+ * Chaque requête (hors connexion) est enregistrée dans un {@link WorkloadReport} : latence et code HTTP,
+ * -1 si aucune réponse n'a été reçue.
+ *
+ * Les jetons viennent d'un {@link TokenCache}, qui peut être partagé entre exécutions : un utilisateur
+ * ne se reconnecte que sur un 401 ou à l'approche de l'expiration de son jeton.
+ *
+ * Pour que le générateur ne soit pas limité par son propre GC, les requêtes sont préparées à l'avance :
+ * URI calculées une fois, GET construits une fois par jeton et réutilisés (HttpRequest est immuable),
+ * corps de création copiés depuis un gabarit d'octets dont seuls le nom et le prix sont modifiés.
+ * Les requêtes passent par connections clients HTTP/1.1 ou HTTP/2 utilisés à tour de rôle ; en HTTP/2
+ * chaque client ouvre une seule connexion multiplexée vers l'API.
+ */
 public class ApiWorkloadRunner {
 
-    private final HttpClient client;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    private static final int MAX_PENDING_ROWS = 10_000;
+    // au-delà, la requête compte comme sans réponse (-1) au lieu de bloquer son utilisateur indéfiniment
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    // Corps de WRITE_CREATE_PRODUCT : chiffres du nom (5) et du prix (2) remplacés à chaque envoi
+    private static final byte[] PRODUCT_TEMPLATE =
+            "{\"name\":\"Generated product 00000\",\"price\":00,\"expirationDate\":\"2026-12-31\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+    private static final int NAME_DIGITS_END = indexAfter(PRODUCT_TEMPLATE, "product 00000");
+    private static final int PRICE_DIGITS_END = indexAfter(PRODUCT_TEMPLATE, "\"price\":00");
+
+    // Requêtes d'un utilisateur pour son jeton courant ; reconstruites quand le jeton change
+    private record Prepared(String token, String authorization, HttpRequest list, HttpRequest expensive) {
+    }
+
+    private final HttpClient[] clients;
+    private final AtomicInteger nextClient = new AtomicInteger();
     private final ObjectMapper mapper = new ObjectMapper();
     private final String baseUrl;
+    private final URI productsUri;
+    private final URI expensiveProductsUri;
+    private final URI productsCreateUri;
+    private final URI loginUri;
+    private final Map<String, Prepared> prepared = new ConcurrentHashMap<>();
 
-    private final Random random = new Random();
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final TokenCache tokens;
+    private final LiveMetrics live;
 
     public ApiWorkloadRunner(String baseUrl) {
+        this(baseUrl, DEFAULT_MAX_IN_FLIGHT, new TokenCache());
+    }
+
+    public ApiWorkloadRunner(String baseUrl, int maxInFlight, TokenCache tokens) {
+        this(baseUrl, maxInFlight, tokens, HttpClient.Version.HTTP_1_1, 1);
+    }
+
+    /**
+     * @param version     HTTP_1_1 : le client ouvre autant de connexions que de requêtes en vol ;
+     *                    HTTP_2 : une connexion multiplexée par client (h2c sur http://, repli en HTTP/1.1 si refusé)
+     * @param connections nombre de clients HTTP, donc de connexions en HTTP/2
+     */
+    public ApiWorkloadRunner(String baseUrl, int maxInFlight, TokenCache tokens,
+                             HttpClient.Version version, int connections) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight doit être >= 1 : " + maxInFlight);
+        }
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections doit être >= 1 : " + connections);
+        }
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
-        this.client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(5))
-                .build();
+        this.productsUri = URI.create(this.baseUrl + "/products/");
+        this.expensiveProductsUri = URI.create(this.baseUrl + "/products/?minPrice=50.0");
+        this.productsCreateUri = URI.create(this.baseUrl + "/products");
+        this.loginUri = URI.create(this.baseUrl + "/auth/login");
+        this.clients = new HttpClient[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = HttpClient.newBuilder()
+                    .version(version)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+        }
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.tokens = tokens;
+        this.live = new LiveMetrics(() -> this.maxInFlight - inFlight.availablePermits());
+    }
+
+    // Mesures de l'exécution en cours (scénario, modèle ouvert ou rejeu), à échantillonner pendant qu'elle tourne
+    public LiveMetrics live() {
+        return live;
+    }
+
+    // Rapport d'une exécution de ce runner, relié aux mesures en direct
+    WorkloadReport newReport(double targetRate) {
+        return new WorkloadReport(targetRate, live);
+    }
+
+    public WorkloadReport runScenario(List<ApiScenarioRequest> requests) throws Exception {
+        return runScenario(requests.iterator());
+    }
+
+    /**
+     * Scénario lu au fil de l'eau ({@link ScenarioFile}) : chaque ligne est confiée à la file de son utilisateur
+     * ({@link UserLanes}), qui enchaîne ses count opérations ; au plus MAX_PENDING_ROWS lignes en mémoire.
+     * Une erreur de connexion arrête l'exécution et est relancée.
+     */
+    public WorkloadReport runScenario(Iterator<ApiScenarioRequest> requests) throws Exception {
+        WorkloadReport report = newReport(Double.NaN);
+        report.start();
+        UserLanes lanes = new UserLanes(MAX_PENDING_ROWS);
+        try {
+            while (requests.hasNext() && lanes.failure() == null) {
+                ApiScenarioRequest req = requests.next();
+                lanes.submit(req.email(), () -> runRow(req, report, lanes));
+            }
+        } catch (Exception e) {
+            // avant close() : sinon il attendrait toutes les lignes déjà soumises
+            lanes.cancel();
+            throw e;
+        } finally {
+            lanes.close();
+        }
+        if (lanes.failure() != null) {
+            throw lanes.failure();
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException(); // annulé après la dernière requête
+        }
+        report.finish();
+        return report;
+    }
+
+    /**
+     * Modèle ouvert : les count opérations du scénario sont envoyées à ratePerSecond, à intervalles
+     * réguliers et quels que soient les temps de réponse. Chaque arrivée tire une ligne du scénario
+     * au prorata de son count, ce qui donne le mélange utilisateurs / OperationType du scénario.
+     * Les connexions sont faites avant le départ et ne sont pas mesurées.
+     */
+    public WorkloadReport runOpenModel(List<ApiScenarioRequest> requests, double ratePerSecond) throws Exception {
+        long total = requests.stream().mapToLong(ApiScenarioRequest::count).sum();
+        return runOpenModel(requests, ratePerSecond, total);
+    }
+
+    // Modèle ouvert pendant duration : ratePerSecond * duration arrivées, même mélange que le scénario
+    public WorkloadReport runOpenModel(List<ApiScenarioRequest> requests, double ratePerSecond, Duration duration)
+            throws Exception {
+        return runOpenModel(requests, ratePerSecond, (long) Math.ceil(ratePerSecond * duration.toNanos() / 1e9));
     }
 
-    public void runScenario(List<ApiScenarioRequest> requests) throws Exception {
-        for (ApiScenarioRequest req : requests) {
-            String token = login(req.email(), req.password());
-            for (int i = 0; i < req.count(); i++) {
-                switch (req.operationType()) {
-                    case READ_PRODUCTS_LIST -> doReadProductsList(token, false);
-                    case READ_PRODUCTS_EXPENSIVE -> doReadProductsList(token, true);
-                    case WRITE_CREATE_PRODUCT -> doCreateProduct(token);
+    private WorkloadReport runOpenModel(List<ApiScenarioRequest> requests, double ratePerSecond, long arrivals)
+            throws Exception {
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("Débit cible invalide : " + ratePerSecond);
+        }
+
+        long total = 0;
+        long[] cumulative = new long[requests.size()];
+        for (int r = 0; r < requests.size(); r++) {
+            ApiScenarioRequest req = requests.get(r);
+            total += req.count();
+            cumulative[r] = total;
+            token(req); // connexion avant le départ, hors mesure
+        }
+        if (total == 0 && arrivals > 0) {
+            throw new IllegalArgumentException("Scénario vide : aucune opération à tirer");
+        }
+
+        WorkloadReport report = newReport(ratePerSecond);
+        long periodNanos = (long) (1_000_000_000L / ratePerSecond);
+        report.start();
+        long start = System.nanoTime();
+
+        // une requête = un thread virtuel : l'ordonnanceur n'attend jamais une réponse
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < arrivals; i++) {
+                long intended = start + i * periodNanos;
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    // parkNanos rend la main aussitôt une fois interrompu : tester ici, sinon on tourne à vide
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                    LockSupport.parkNanos(wait);
+                }
+                // annulation : la fermeture de l'executor, thread interrompu, interrompt les requêtes en cours
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
                 }
+
+                ApiScenarioRequest req = requests.get(lineOf(cumulative, ThreadLocalRandom.current().nextLong(total)));
+                executor.execute(() -> {
+                    int status;
+                    try {
+                        status = executeWithToken(req);
+                    } catch (Exception e) {
+                        status = -1; // reconnexion impossible
+                    }
+                    if (Thread.currentThread().isInterrupted()) return; // annulée : non comptée
+                    // depuis l'envoi prévu, et non réel : le retard pris par l'ordonnanceur compte aussi
+                    report.record(req.email(), req.operationType(), System.nanoTime() - intended, status);
+                });
             }
         }
+        report.finish();
+        return report;
+    }
+
+    // Ligne du scénario qui couvre le tirage : première ligne dont le cumul dépasse draw
+    private static int lineOf(long[] cumulative, long draw) {
+        int lo = 0, hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] > draw) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    // count opérations d'une ligne, interrompues dès qu'un autre utilisateur a échoué
+    private void runRow(ApiScenarioRequest req, WorkloadReport report, UserLanes lanes) throws Exception {
+        for (int i = 0; i < req.count() && lanes.failure() == null; i++) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            long start = System.nanoTime();
+            int status = executeWithToken(req);
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException(); // annulée : non comptée
+            report.record(req.email(), req.operationType(), System.nanoTime() - start, status);
+        }
+    }
+
+    private String token(ApiScenarioRequest req) throws Exception {
+        return tokens.get(req.email(), req.password(), this::login);
+    }
+
+    // Opération avec le jeton en cache ; sur un 401 le jeton est invalidé et l'opération rejouée une fois
+    private int executeWithToken(ApiScenarioRequest req) throws Exception {
+        String token = token(req);
+        int status = executeOrFail(req.operationType(), prepared(req.email(), token));
+        if (status == 401) {
+            tokens.invalidate(req.email(), token);
+            status = executeOrFail(req.operationType(), prepared(req.email(), token(req)));
+        }
+        return status;
+    }
+
+    /**
+     * Rejeu de logs : requête quelconque au nom d'un utilisateur, avec son jeton en cache (rejouée une fois
+     * sur un 401). pathAndQuery est relatif à baseUrl ; body null = sans corps. Retourne le code HTTP, -1 sans réponse.
+     */
+    int send(String email, String password, String method, String pathAndQuery, String body) throws Exception {
+        String token = tokens.get(email, password, this::login);
+        int status = sendOrFail(request(method, pathAndQuery, body, prepared(email, token)));
+        if (status == 401) {
+            tokens.invalidate(email, token);
+            token = tokens.get(email, password, this::login);
+            status = sendOrFail(request(method, pathAndQuery, body, prepared(email, token)));
+        }
+        return status;
+    }
+
+    // Requêtes préparées de l'utilisateur, reconstruites si son jeton a changé
+    private Prepared prepared(String email, String token) {
+        Prepared current = prepared.get(email);
+        if (current != null && current.token().equals(token)) {
+            return current;
+        }
+        String authorization = "Bearer " + token;
+        Prepared fresh = new Prepared(token, authorization,
+                get(productsUri, authorization), get(expensiveProductsUri, authorization));
+        prepared.put(email, fresh);
+        return fresh;
+    }
+
+    private static HttpRequest get(URI uri, String authorization) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", authorization)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest request(String method, String pathAndQuery, String body, Prepared user) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + pathAndQuery))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", user.authorization());
+        if (body == null) {
+            return builder.method(method, HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return builder.header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private int sendOrFail(HttpRequest request) {
+        try {
+            return send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    // Code HTTP, -1 si l'envoi a échoué (connexion refusée, timeout...)
+    private int executeOrFail(OperationType type, Prepared user) {
+        try {
+            return execute(type, user);
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    // Une opération du scénario ; retourne le code HTTP
+    private int execute(OperationType type, Prepared user) throws IOException, InterruptedException {
+        return switch (type) {
+            case READ_PRODUCTS_LIST -> doReadProductsList(user, false);
+            case READ_PRODUCTS_EXPENSIVE -> doReadProductsList(user, true);
+            case WRITE_CREATE_PRODUCT -> doCreateProduct(user);
+        };
+    }
+
+    // Envoi bloquant (thread virtuel) sous le plafond global de requêtes en vol
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        inFlight.acquire();
+        try {
+            return client().send(request, handler);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    // Clients utilisés à tour de rôle
+    private HttpClient client() {
+        if (clients.length == 1) return clients[0];
+        return clients[Math.floorMod(nextClient.getAndIncrement(), clients.length)];
     }
 
     private String login(String email, String password) throws Exception {
@@ -47,12 +375,13 @@ public class ApiWorkloadRunner {
                 .toString();
 
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/auth/login"))
+                .uri(loginUri)
+                .timeout(REQUEST_TIMEOUT)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
         if (response.statusCode() / 100 != 2) {
             throw new RuntimeException("Login failed for " + email + " : " + response.statusCode() + " / " + response.body());
         }
@@ -61,39 +390,41 @@ public class ApiWorkloadRunner {
         return node.get("token").asText();
     }
 
-    private void doReadProductsList(String token, boolean expensive) throws Exception {
-        String uri = baseUrl + "/products/";
-        if (expensive) {
-            uri += "?minPrice=50.0";
-        }
+    private int doReadProductsList(Prepared user, boolean expensive) throws IOException, InterruptedException {
+        HttpRequest request = expensive ? user.expensive() : user.list();
+        return send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(uri))
-                .header("Authorization", "Bearer " + token)
-                .GET()
+    private int doCreateProduct(Prepared user) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        HttpRequest request = HttpRequest.newBuilder(productsCreateUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", user.authorization())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(productBody(random.nextInt(100000), 10 + random.nextInt(90))))
                 .build();
 
-        client.send(request, HttpResponse.BodyHandlers.discarding());
+        return send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
     }
 
-    private void doCreateProduct(String token) throws Exception {
-        BigDecimal price = BigDecimal.valueOf(10 + random.nextInt(90));
-        String expirationDate = "2026-12-31"; // LocalDate côté Java
-
-        var node = mapper.createObjectNode();
-        node.put("name", "Generated product " + random.nextInt(100000));
-        node.put("price", price);
-        node.put("expirationDate", expirationDate);
-
-        String body = mapper.writeValueAsString(node);
+    // Copie du gabarit avec le numéro du produit (0..99999) et son prix (10..99) ; expirationDate : LocalDate côté Java
+    static byte[] productBody(int id, int price) {
+        byte[] body = PRODUCT_TEMPLATE.clone();
+        writeDigits(body, NAME_DIGITS_END, id, 5);
+        writeDigits(body, PRICE_DIGITS_END, price, 2);
+        return body;
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/products"))
-                .header("Authorization", "Bearer " + token)
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(body))
-                .build();
+    // Écrit value sur width chiffres, complétés par des zéros, qui se terminent juste avant end
+    private static void writeDigits(byte[] buf, int end, int value, int width) {
+        for (int i = end - 1; i >= end - width; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
 
-        client.send(request, HttpResponse.BodyHandlers.discarding());
+    private static int indexAfter(byte[] template, String marker) {
+        String text = new String(template, StandardCharsets.UTF_8);
+        return text.indexOf(marker) + marker.length();
     }
 }
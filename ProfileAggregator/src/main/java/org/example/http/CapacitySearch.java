@@ -0,0 +1,157 @@
+package org.example.http;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Recherche du débit maximal soutenable sous un SLO (p99 et taux d'erreur, toutes opérations confondues),
+ * par paliers de modèle ouvert ({@link ApiWorkloadRunner#runOpenModel(List, double, Duration)}) de même durée :
+ * - montée : le débit est multiplié par growth à chaque palier tant que le SLO tient ;
+ * - affinage : recherche dichotomique entre le dernier palier tenu et le premier en échec.
+ *
+ * Le coude est le plus haut débit testé qui respecte le SLO. Chaque palier garde son {@link WorkloadReport} :
+ * la courbe débit / latence par OperationType s'en déduit ({@link Result#writeCsv}).
+ */
+public class CapacitySearch {
+
+    // Pause entre paliers, pour que la file d'attente de l'API se vide avant la mesure suivante
+    private static final Duration COOL_DOWN = Duration.ofSeconds(2);
+    // Palier non mesuré au débit de départ : JIT et connexions chauds des deux côtés avant le premier palier
+    private static final Duration WARM_UP = Duration.ofSeconds(2);
+
+    public record Slo(double p99Millis, double maxErrorRate) {
+
+        public boolean isMet(WorkloadReport.Series series) {
+            return series.latencies().quantile(0.99) / 1e6 <= p99Millis
+                    && WorkloadReport.errorRate(series) <= maxErrorRate;
+        }
+    }
+
+    public record Step(double targetRate, WorkloadReport report, boolean sloMet) {
+    }
+
+    public record Result(Slo slo, List<Step> steps, Step knee) {
+
+        // Une ligne par palier et par opération (operation = TOTAL pour l'ensemble), paliers par débit croissant
+        public void writeCsv(Path out) throws IOException {
+            Files.createDirectories(out.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(out); PrintWriter csv = new PrintWriter(writer)) {
+                csv.println("targetRate,operation,count,throughput,p50Ms,p99Ms,maxMs,errorRate,sloMet");
+                for (Step step : byRate()) {
+                    for (Map.Entry<String, WorkloadReport.Series> entry : curve(step).entrySet()) {
+                        WorkloadReport.Series series = entry.getValue();
+                        LatencyHistogram h = series.latencies();
+                        csv.println(String.format(Locale.ROOT, "%.1f,%s,%d,%.1f,%.3f,%.3f,%.3f,%.4f,%b",
+                                step.targetRate(), entry.getKey(), h.count(), step.report().throughput(series),
+                                h.quantile(0.5) / 1e6, h.quantile(0.99) / 1e6, h.max() / 1e6,
+                                WorkloadReport.errorRate(series), step.sloMet()));
+                    }
+                }
+            }
+        }
+
+        private List<Step> byRate() {
+            List<Step> sorted = new ArrayList<>(steps);
+            sorted.sort((a, b) -> Double.compare(a.targetRate(), b.targetRate()));
+            return sorted;
+        }
+
+        private static Map<String, WorkloadReport.Series> curve(Step step) {
+            Map<String, WorkloadReport.Series> series = new LinkedHashMap<>();
+            series.put("TOTAL", step.report().total());
+            for (OperationType type : OperationType.values()) {
+                WorkloadReport.Series s = step.report().operation(type.name());
+                if (s != null) series.put(type.name(), s);
+            }
+            return series;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                    "SLO : p99 <= %.0f ms, erreurs <= %.2f %%%n", slo.p99Millis(), 100 * slo.maxErrorRate()));
+            for (Step step : byRate()) {
+                WorkloadReport.Series total = step.report().total();
+                sb.append(String.format(Locale.ROOT, "  %8.1f req/s visés : %8.1f obtenus, p99=%.1fms, erreurs=%.2f %% %s%n",
+                        step.targetRate(), step.report().throughput(total),
+                        total.latencies().quantile(0.99) / 1e6, 100 * WorkloadReport.errorRate(total),
+                        step.sloMet() ? "ok" : "SLO dépassé"));
+            }
+            sb.append(knee != null
+                    ? String.format(Locale.ROOT, "Coude : %.1f req/s%n", knee.targetRate())
+                    : "Coude : SLO dépassé dès le premier palier\n");
+            return sb.toString();
+        }
+    }
+
+    private final ApiWorkloadRunner runner;
+    private final Slo slo;
+    private final Duration stepDuration;
+
+    public CapacitySearch(ApiWorkloadRunner runner, Slo slo, Duration stepDuration) {
+        this.runner = runner;
+        this.slo = slo;
+        this.stepDuration = stepDuration;
+    }
+
+    /**
+     * @param startRate   débit du premier palier (req/s)
+     * @param growth      facteur entre deux paliers de la montée (> 1)
+     * @param maxRate     débit au-delà duquel la montée s'arrête, même si le SLO tient encore
+     * @param refinements nombre de paliers de la recherche dichotomique
+     */
+    public Result search(List<ApiScenarioRequest> requests, double startRate, double growth, double maxRate,
+                         int refinements) throws Exception {
+        if (!(startRate > 0) || !(growth > 1)) {
+            throw new IllegalArgumentException("startRate doit être > 0 et growth > 1");
+        }
+
+        runner.runOpenModel(requests, startRate, WARM_UP);
+        LockSupport.parkNanos(COOL_DOWN.toNanos());
+
+        List<Step> steps = new ArrayList<>();
+        Step lastMet = null;
+        Step firstBroken = null;
+        for (double rate = startRate; rate <= maxRate; rate *= growth) {
+            Step step = run(requests, rate);
+            steps.add(step);
+            if (!step.sloMet()) {
+                firstBroken = step;
+                break;
+            }
+            lastMet = step;
+        }
+
+        // affinage entre le dernier palier tenu et le premier en échec
+        double low = lastMet != null ? lastMet.targetRate() : 0;
+        for (int i = 0; i < refinements && firstBroken != null; i++) {
+            double rate = (low + firstBroken.targetRate()) / 2;
+            if (rate <= 0) break;
+            Step step = run(requests, rate);
+            steps.add(step);
+            if (step.sloMet()) {
+                lastMet = step;
+                low = rate;
+            } else {
+                firstBroken = step;
+            }
+        }
+        return new Result(slo, steps, lastMet);
+    }
+
+    private Step run(List<ApiScenarioRequest> requests, double rate) throws Exception {
+        WorkloadReport report = runner.runOpenModel(requests, rate, stepDuration);
+        LockSupport.parkNanos(COOL_DOWN.toNanos());
+        return new Step(rate, report, slo.isMet(report.total()));
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.http;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Scénario réparti sur plusieurs JVM de la même machine, quand une seule JVM manque de CPU ou de sockets.
+ *
+ * Le coordinateur lance workers processus (même java, même classpath, classe principale mainClass avec
+ * --worker=i/N) ; chacun lit le même fichier de scénario et garde les utilisateurs de sa partition
+ * ({@link ScenarioFile#open(Path, int, int)}), l'ordre par utilisateur est donc conservé.
+ *
+ * Protocole, une ligne de texte par message :
+ * - worker → coordinateur (stdout) : READY une fois prêt, puis REPORT &lt;rapport en Base64&gt; ou ERROR &lt;message&gt; ;
+ * - coordinateur → worker (stdin) : GO &lt;instant de départ en ms epoch&gt;, envoyé quand tous sont prêts.
+ * Tous les workers partent au même instant (même horloge) ; leurs histogrammes et compteurs sont
+ * fusionnés dans un seul {@link WorkloadReport}. stderr des workers est celui du coordinateur.
+ */
+public class DistributedWorkload {
+
+    static final String READY = "READY";
+    static final String GO = "GO";
+    static final String REPORT = "REPORT";
+    static final String ERROR = "ERROR";
+
+    // marge entre l'envoi des GO et le départ commun
+    private static final Duration START_DELAY = Duration.ofMillis(500);
+
+    private final Class<?> mainClass;
+    private final int workers;
+    private final List<String> workerArgs;
+
+    /**
+     * @param workerArgs arguments transmis à chaque worker (scénario, options de l'exécuteur), sans --worker
+     */
+    public DistributedWorkload(Class<?> mainClass, int workers, List<String> workerArgs) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers doit être >= 1 : " + workers);
+        }
+        this.mainClass = mainClass;
+        this.workers = workers;
+        this.workerArgs = List.copyOf(workerArgs);
+    }
+
+    public WorkloadReport run() throws Exception {
+        List<Process> processes = new ArrayList<>();
+        List<BufferedReader> outputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                List<String> command = new ArrayList<>();
+                command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+                command.add("-cp");
+                command.add(classPath());
+                command.add(mainClass.getName());
+                command.addAll(workerArgs);
+                command.add("--worker=" + i + "/" + workers);
+
+                Process process = new ProcessBuilder(command)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+                outputs.add(new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)));
+            }
+
+            for (int i = 0; i < workers; i++) {
+                expect(i, outputs.get(i), READY, processes.get(i));
+            }
+            long startAt = System.currentTimeMillis() + START_DELAY.toMillis();
+            for (Process process : processes) {
+                Writer commands = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+                commands.write(GO + " " + startAt + "\n");
+                commands.flush();
+            }
+
+            WorkloadReport merged = new WorkloadReport(Double.NaN);
+            for (int i = 0; i < workers; i++) {
+                byte[] bytes = Base64.getDecoder().decode(expect(i, outputs.get(i), REPORT, processes.get(i)));
+                merged.merge(WorkloadReport.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+            return merged;
+        } finally {
+            // échec d'un worker (ou du coordinateur) : on n'en laisse aucun tourner
+            for (Process process : processes) {
+                if (process.isAlive()) process.destroyForcibly();
+            }
+        }
+    }
+
+    // Contenu du prochain message type du worker i ; ERROR ou fin de flux = échec de l'exécution
+    private static String expect(int worker, BufferedReader output, String type, Process process)
+            throws IOException, InterruptedException {
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.equals(type)) return "";
+            if (line.startsWith(type + " ")) return line.substring(type.length() + 1);
+            if (line.startsWith(ERROR + " ")) {
+                throw new IllegalStateException("Worker " + worker + " : " + line.substring(ERROR.length() + 1));
+            }
+            System.err.println("[worker " + worker + "] " + line);
+        }
+        throw new IllegalStateException("Worker " + worker + " arrêté avant " + type
+                + " (code " + process.waitFor() + ")");
+    }
+
+    // Classpath des workers : celui de la JVM, ou celui du chargeur de l'application sous mvn exec:java
+    private static String classPath() throws URISyntaxException {
+        if (Thread.currentThread().getContextClassLoader() instanceof URLClassLoader loader) {
+            StringJoiner classPath = new StringJoiner(System.getProperty("path.separator"));
+            for (URL url : loader.getURLs()) {
+                classPath.add(Paths.get(url.toURI()).toString());
+            }
+            return classPath.toString();
+        }
+        return System.getProperty("java.class.path");
+    }
+
+    /**
+     * Côté worker (Main --worker=part/parts) : exécute la partition du scénario au signal du coordinateur
+     * et lui renvoie le rapport. stdout est réservé au protocole, tout autre affichage part sur stderr.
+     * Retourne le code de sortie du processus.
+     */
+    public static int runWorker(ApiWorkloadRunner runner, Path scenario, int part, int parts) {
+        PrintStream protocol = System.out;
+        System.setOut(System.err);
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try (ScenarioFile requests = ScenarioFile.open(scenario, part, parts)) {
+            protocol.println(READY);
+            protocol.flush();
+
+            String go = commands.readLine();
+            if (go == null || !go.startsWith(GO + " ")) {
+                throw new IllegalStateException(GO + " attendu, reçu : " + go);
+            }
+            long wait = Long.parseLong(go.substring(GO.length() + 1)) - System.currentTimeMillis();
+            if (wait > 0) Thread.sleep(wait);
+
+            WorkloadReport report = runner.runScenario(requests);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                report.write(out);
+            }
+            protocol.println(REPORT + " " + Base64.getEncoder().encodeToString(bytes.toByteArray()));
+            return 0;
+        } catch (Exception e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            protocol.println(ERROR + " " + message.replace('\n', ' '));
+            return 1;
+        } finally {
+            protocol.flush();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.http;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+/**
+ * Mesures en cours d'exécution, pour l'affichage en direct : un histogramme d'intervalle par opération,
+ * remplacé par un neuf à chaque {@link #sample()}. Le lecteur (un timer Swing) tire les échantillons
+ * à son rythme ; l'enregistrement reste sans verrou et ne notifie personne.
+ *
+ * Une requête enregistrée pendant l'échange de l'histogramme peut tomber dans l'intervalle précédent
+ * déjà lu : acceptable pour un tableau de bord, les rapports finaux ne passent pas par ici.
+ */
+public class LiveMetrics {
+
+    // Intervalle écoulé depuis l'échantillon précédent, requêtes en vol à l'instant de l'échantillon,
+    // latences de l'intervalle par opération
+    public record Sample(long intervalNanos, int inFlight, Map<String, LatencyHistogram> operations) {
+
+        public double throughput(LatencyHistogram interval) {
+            return intervalNanos > 0 ? interval.count() * 1e9 / intervalNanos : 0;
+        }
+    }
+
+    private final IntSupplier inFlight;
+    private final Map<String, AtomicReference<LatencyHistogram>> operations = new ConcurrentHashMap<>();
+    private long lastSampleNanos = System.nanoTime();
+
+    LiveMetrics(IntSupplier inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    void record(String operation, long latencyNanos) {
+        operations.computeIfAbsent(operation, o -> new AtomicReference<>(new LatencyHistogram()))
+                .get().record(latencyNanos);
+    }
+
+    // Réservé à un seul lecteur (le timer de l'interface)
+    public Sample sample() {
+        long now = System.nanoTime();
+        Map<String, LatencyHistogram> intervals = new TreeMap<>();
+        operations.forEach((name, current) -> intervals.put(name, current.getAndSet(new LatencyHistogram())));
+        Sample sample = new Sample(now - lastSampleNanos, inFlight.getAsInt(), intervals);
+        lastSampleNanos = now;
+        return sample;
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.example.aggregation.LogLineReader;
+import org.example.aggregation.LogLineScanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rejeu d'un api.log contre l'API via {@link ApiWorkloadRunner} : chaque ligne authentifiée redevient
+ * une requête HTTP (verbe déduit du nom de la méthode du contrôleur, chemin reconstruit depuis path et path.*,
+ * paramètres depuis query.*).
+ *
+ * Les écarts entre @timestamp sont conservés, divisés par speed (AS_FAST_AS_POSSIBLE = sans attente).
+ * Les requêtes d'un même utilisateur partent dans l'ordre du log ({@link UserLanes}) ;
+ * la latence est mesurée depuis l'instant prévu. Le fichier est lu en streaming et au plus maxPending
+ * requêtes lues mais pas encore envoyées sont gardées en mémoire, quelle que soit la taille du log.
+ */
+public class LogReplayer {
+
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+    public static final int DEFAULT_MAX_PENDING = 10_000;
+
+    private static final int TIMESTAMP = 0;
+    private static final int EMAIL = 1;
+    private static final int PATH = 2;
+    private static final int METHOD = 3;
+    private static final int OP_TYPE = 4;
+    private static final int RESOURCE = 5;
+
+    private static final int PATH_PARAM = 0;
+
+    private static final Pattern PATH_VARIABLE = Pattern.compile("\\{([^}]+)}");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Requête prête à partir ; operation = verbe + chemin du log ("GET /products/{name}")
+    private record ReplayCall(String operation, String method, String pathAndQuery, String body, long dueNanos) {
+    }
+
+    private final ApiWorkloadRunner runner;
+    private final double speed;
+    private final Function<String, String> passwords;
+    private final int maxPending;
+
+    private long replayed;
+    private long skipped;
+
+    /**
+     * @param passwords mot de passe d'un email, null si inconnu (les lignes de cet utilisateur sont ignorées)
+     */
+    public LogReplayer(ApiWorkloadRunner runner, double speed, Function<String, String> passwords) {
+        this(runner, speed, passwords, DEFAULT_MAX_PENDING);
+    }
+
+    public LogReplayer(ApiWorkloadRunner runner, double speed, Function<String, String> passwords, int maxPending) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Facteur de vitesse invalide : " + speed);
+        }
+        this.runner = runner;
+        this.speed = speed;
+        this.passwords = passwords;
+        this.maxPending = maxPending;
+    }
+
+    public WorkloadReport replay(Path logFile) throws IOException {
+        WorkloadReport report = runner.newReport(Double.NaN);
+        LogLineScanner scanner = new LogLineScanner("@timestamp", "userConnected.email", "path", "method", "opType", "resource")
+                .capture("path.", "query.");
+        long[] firstTimestamp = {Long.MIN_VALUE};
+        replayed = 0;
+        skipped = 0;
+
+        report.start();
+        long startNanos = System.nanoTime();
+        try (InputStream in = Files.newInputStream(logFile); UserLanes lanes = new UserLanes(maxPending)) {
+            new LogLineReader().read(in, (buf, off, len) -> {
+                if (!scanner.scan(buf, off, len)) return;
+                String email = scanner.string(EMAIL);
+                String password = email != null ? passwords.apply(email) : null;
+                long timestamp = scanner.epochMillis(TIMESTAMP);
+                // anonyme (dont /auth/login : les connexions passent par le TokenCache), inconnu ou non rejouable
+                ReplayCall call = password != null && timestamp != Long.MIN_VALUE
+                        ? toCall(scanner, startNanos, timestamp, firstTimestamp) : null;
+                if (call == null) {
+                    skipped++;
+                    return;
+                }
+                try {
+                    // bloque si maxPending requêtes sont en attente : le lecteur attend que les utilisateurs rattrapent
+                    lanes.submit(email, () -> send(email, password, call, report));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                replayed++;
+            });
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Rejeu annulé");
+        }
+        report.finish();
+        return report;
+    }
+
+    public long replayed() {
+        return replayed;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    private ReplayCall toCall(LogLineScanner scanner, long startNanos, long timestamp, long[] firstTimestamp) {
+        String template = scanner.string(PATH);
+        String method = httpMethod(scanner.string(METHOD), scanner.string(OP_TYPE));
+        if (template == null || method == null) return null;
+
+        StringBuilder query = new StringBuilder();
+        Map<String, String> pathParams = new HashMap<>(4);
+        for (int i = 0; i < scanner.capturedCount(); i++) {
+            String value = scanner.capturedString(i);
+            if (scanner.capturedPrefix(i) == PATH_PARAM) {
+                pathParams.put(scanner.capturedName(i), value);
+            } else if (value != null && !value.equals("null")) {
+                query.append(query.isEmpty() ? '?' : '&')
+                        .append(encode(scanner.capturedName(i))).append('=').append(encode(value));
+            }
+        }
+
+        StringBuilder path = new StringBuilder();
+        Matcher m = PATH_VARIABLE.matcher(template);
+        while (m.find()) {
+            String value = pathParams.get(m.group(1));
+            if (value == null) return null; // variable du chemin absente du log
+            m.appendReplacement(path, Matcher.quoteReplacement(encode(value)));
+        }
+        m.appendTail(path);
+
+        String body = null;
+        if (method.equals("POST") || method.equals("PUT")) {
+            if (!"products".equals(scanner.string(RESOURCE))) return null; // corps non reconstructible
+            body = productBody(pathParams.get("name"));
+        }
+
+        if (firstTimestamp[0] == Long.MIN_VALUE) firstTimestamp[0] = timestamp;
+        long due = paced() ? startNanos + (long) ((timestamp - firstTimestamp[0]) * 1_000_000 / speed) : 0;
+        return new ReplayCall(method + " " + template, method, path.append(query).toString(), body, due);
+    }
+
+    private boolean paced() {
+        return speed != AS_FAST_AS_POSSIBLE;
+    }
+
+    /**
+     * Verbe HTTP d'un appel du log : le log ne contient que le nom de la méthode du contrôleur,
+     * on s'appuie sur les conventions de nommage, puis sur opType. null = non rejouable (login, inconnu).
+     */
+    static String httpMethod(String handler, String opType) {
+        if (handler == null || handler.equals("login")) return null;
+        String h = handler.toLowerCase();
+        if (h.startsWith("get") || h.startsWith("find") || h.startsWith("list")
+                || h.startsWith("search") || h.equals("me")) return "GET";
+        if (h.startsWith("create") || h.startsWith("add") || h.startsWith("save")) return "POST";
+        if (h.startsWith("update") || h.startsWith("edit") || h.startsWith("replace")) return "PUT";
+        if (h.startsWith("delete") || h.startsWith("remove")) return "DELETE";
+        return "READ".equals(opType) ? "GET" : null;
+    }
+
+    private static String productBody(String name) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("name", name != null ? name : "Replayed product " + random.nextInt(100000));
+        node.put("price", BigDecimal.valueOf(10 + random.nextInt(90)));
+        node.put("expirationDate", "2026-12-31");
+        return node.toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    // Envoi d'une requête du log, à son instant prévu ; exécuté dans la file de l'utilisateur
+    private void send(String email, String password, ReplayCall call, WorkloadReport report) {
+        long intended = System.nanoTime();
+        if (paced()) {
+            long wait;
+            while ((wait = call.dueNanos() - System.nanoTime()) > 0) {
+                if (Thread.currentThread().isInterrupted()) return; // rejeu annulé
+                LockSupport.parkNanos(wait);
+            }
+            intended = call.dueNanos();
+        }
+
+        int status;
+        try {
+            status = runner.send(email, password, call.method(), call.pathAndQuery(), call.body());
+        } catch (Exception e) {
+            status = -1; // connexion impossible
+        }
+        if (Thread.currentThread().isInterrupted()) return;
+        report.record(email, call.operation(), System.nanoTime() - intended, status);
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.http;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Scénario lu en streaming depuis un fichier, une ligne de scénario à la fois :
+ * - JSONL (.jsonl, .json) : un objet par ligne ;
+ * - YAML (.yaml, .yml) : une liste d'objets, ou un objet par document (séparés par ---).
+ *
+ * Chaque objet : {"email", "password" (facultatif : passwordN pour userN@...), "operation" (OperationType),
+ * "count" (facultatif, 1 par défaut)}. count n'est pas déplié ici : c'est l'exécuteur qui enchaîne les count
+ * opérations, le fichier peut donc décrire des millions de requêtes sans les charger.
+ *
+ * Ouvert avec une partition (part sur parts), seules les lignes des utilisateurs de cette partition sont
+ * retournées : chaque worker d'une exécution répartie lit le même fichier et garde ses utilisateurs.
+ */
+public final class ScenarioFile implements Iterator<ApiScenarioRequest>, Closeable {
+
+    private record Row(String email, String password, @JsonAlias("operationType") OperationType operation, Integer count) {
+    }
+
+    private final Path file;
+    private final MappingIterator<Row> rows;
+    private final int part;
+    private final int parts;
+
+    // ligne déjà lue et validée, pas encore retournée
+    private ApiScenarioRequest next;
+
+    private ScenarioFile(Path file, MappingIterator<Row> rows, int part, int parts) {
+        this.file = file;
+        this.rows = rows;
+        this.part = part;
+        this.parts = parts;
+    }
+
+    public static ScenarioFile open(Path file) throws IOException {
+        return open(file, 0, 1);
+    }
+
+    // Lignes des utilisateurs dont le hash de l'email vaut part modulo parts
+    public static ScenarioFile open(Path file, int part, int parts) throws IOException {
+        if (parts < 1 || part < 0 || part >= parts) {
+            throw new IllegalArgumentException("Partition invalide : " + part + "/" + parts);
+        }
+        String name = file.getFileName().toString().toLowerCase();
+        ObjectMapper mapper = name.endsWith(".yaml") || name.endsWith(".yml")
+                ? new ObjectMapper(new YAMLFactory())
+                : new ObjectMapper();
+        return new ScenarioFile(file, mapper.readerFor(Row.class).readValues(file.toFile()), part, parts);
+    }
+
+    static int partOf(String email, int parts) {
+        return Math.floorMod(email.hashCode(), parts);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null && rows.hasNextValue()) {
+                ApiScenarioRequest req = toRequest(rows.nextValue());
+                if (parts == 1 || partOf(req.email(), parts) == part) {
+                    next = req;
+                }
+            }
+            return next != null;
+        } catch (IOException | RuntimeJsonMappingException e) {
+            throw invalid(e.getMessage());
+        }
+    }
+
+    @Override
+    public ApiScenarioRequest next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        ApiScenarioRequest req = next;
+        next = null;
+        return req;
+    }
+
+    private ApiScenarioRequest toRequest(Row row) {
+        if (row.email() == null || row.operation() == null) {
+            throw invalid("email et operation sont obligatoires");
+        }
+        String password = row.password() != null ? row.password() : ApiScenarioRequest.seededPassword(row.email());
+        if (password == null) {
+            throw invalid("mot de passe manquant pour " + row.email());
+        }
+        int count = row.count() != null ? row.count() : 1;
+        if (count < 0) {
+            throw invalid("count négatif : " + count);
+        }
+        return new ApiScenarioRequest(row.email(), password, row.operation(), count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        rows.close();
+    }
+
+    private IllegalArgumentException invalid(String reason) {
+        JsonLocation location = rows.getCurrentLocation();
+        int line = location != null ? location.getLineNr() : -1;
+        return new IllegalArgumentException("Scénario invalide (" + file.getFileName() + ", ligne " + line + ") : " + reason);
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Jetons JWT par email, partagés entre scénarios et utilisateurs simulés concurrents.
+ *
+ * Une seule connexion à la fois par email : les appelants concurrents attendent le même
+ * CompletableFuture. Un jeton est renouvelé quand son exp (lu dans le JWT) est à moins de
+ * REFRESH_MARGIN (au plus un dixième de sa durée de vie, pour les jetons courts), ou quand
+ * l'API l'a refusé (401, voir {@link #invalidate}).
+ */
+public class TokenCache {
+
+    @FunctionalInterface
+    public interface Login {
+        String login(String email, String password) throws Exception;
+    }
+
+    static final Duration REFRESH_MARGIN = Duration.ofMinutes(1);
+    // durée de vie supposée d'un jeton dont l'exp n'est pas lisible
+    static final Duration DEFAULT_TTL = Duration.ofMinutes(15);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private record Token(String value, long refreshAtMillis) {
+    }
+
+    private final Map<String, CompletableFuture<Token>> tokens = new ConcurrentHashMap<>();
+    private final LongAdder logins = new LongAdder();
+
+    public String get(String email, String password, Login login) throws Exception {
+        while (true) {
+            CompletableFuture<Token> current = tokens.get(email);
+            if (current != null && !expired(current)) {
+                try {
+                    return current.join().value();
+                } catch (CompletionException e) {
+                    // connexion partagée en échec : même erreur pour tous ceux qui l'attendaient
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+
+            CompletableFuture<Token> mine = new CompletableFuture<>();
+            boolean installed = current == null
+                    ? tokens.putIfAbsent(email, mine) == null
+                    : tokens.replace(email, current, mine);
+            if (!installed) continue; // un autre thread se connecte déjà : on attend son résultat
+
+            try {
+                logins.increment();
+                String value = login.login(email, password);
+                mine.complete(new Token(value, refreshAt(value)));
+                return value;
+            } catch (Exception e) {
+                // pas de jeton en cache après un échec : le prochain appel retente
+                tokens.remove(email, mine);
+                mine.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    // Jeton refusé par l'API : retiré s'il est toujours celui en cache (sinon un autre thread l'a déjà remplacé)
+    public void invalidate(String email, String token) {
+        CompletableFuture<Token> current = tokens.get(email);
+        if (current != null && current.isDone() && !current.isCompletedExceptionally()
+                && current.join().value().equals(token)) {
+            tokens.remove(email, current);
+        }
+    }
+
+    // Nombre d'appels à /auth/login effectués
+    public long logins() {
+        return logins.sum();
+    }
+
+    private static boolean expired(CompletableFuture<Token> future) {
+        if (!future.isDone() || future.isCompletedExceptionally()) return false;
+        return System.currentTimeMillis() >= future.join().refreshAtMillis();
+    }
+
+    private static long refreshAt(String jwt) {
+        long now = System.currentTimeMillis();
+        long expiresAt = expiresAt(jwt);
+        return expiresAt - Math.min(REFRESH_MARGIN.toMillis(), Math.max(0, expiresAt - now) / 10);
+    }
+
+    // exp (secondes) du payload JWT, sans vérifier la signature : seule l'API en a besoin
+    static long expiresAt(String jwt) {
+        try {
+            String[] parts = jwt.split("\\.");
+            JsonNode payload = MAPPER.readTree(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+            if (payload.hasNonNull("exp")) {
+                return payload.get("exp").asLong() * 1000;
+            }
+        } catch (Exception ignored) {
+            // jeton opaque : durée de vie par défaut
+        }
+        return System.currentTimeMillis() + DEFAULT_TTL.toMillis();
+    }
+}
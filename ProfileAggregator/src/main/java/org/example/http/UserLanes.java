@@ -0,0 +1,112 @@
+package org.example.http;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exécution ordonnée par utilisateur : les tâches d'un même utilisateur s'exécutent l'une après l'autre,
+ * dans l'ordre de soumission, sur un thread virtuel qui se termine quand sa file est vide ; les utilisateurs
+ * avancent en parallèle. Au plus maxPending tâches soumises mais pas terminées : submit bloque au-delà,
+ * ce qui borne la mémoire quand les tâches sont lues depuis un flux (scénario, log) plus vite qu'exécutées.
+ *
+ * Après l'échec d'une tâche, les tâches restantes sont ignorées et l'erreur est disponible via {@link #failure()}.
+ */
+final class UserLanes implements AutoCloseable {
+
+    @FunctionalInterface
+    interface Task {
+        void run() throws Exception;
+    }
+
+    private final Semaphore backlog;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    UserLanes(int maxPending) {
+        this.backlog = new Semaphore(maxPending);
+    }
+
+    void submit(String user, Task task) throws InterruptedException {
+        backlog.acquire();
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(user, Lane::new);
+            synchronized (lane) {
+                if (lane.retired) continue; // la file vient de se terminer : on en crée une nouvelle
+                lane.queue.add(task);
+                if (!lane.running) {
+                    lane.running = true;
+                    try {
+                        executor.execute(lane);
+                    } catch (RejectedExecutionException e) {
+                        // executor arrêté (cancel) : la file ne démarrera jamais, on la retire avec sa tâche
+                        lane.queue.removeLast();
+                        lane.running = false;
+                        lane.retired = true;
+                        lanes.remove(user, lane);
+                        backlog.release();
+                        throw e;
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    // Première erreur levée par une tâche, null sinon
+    Exception failure() {
+        return failure.get();
+    }
+
+    // Attend la fin de toutes les tâches soumises
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    // Interrompt les tâches en cours
+    void cancel() {
+        executor.shutdownNow();
+    }
+
+    private final class Lane implements Runnable {
+
+        private final String user;
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private boolean running;
+        private boolean retired;
+
+        Lane(String user) {
+            this.user = user;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task;
+                synchronized (this) {
+                    task = queue.poll();
+                    if (task == null) {
+                        running = false;
+                        retired = true;
+                        lanes.remove(user, this);
+                        return;
+                    }
+                }
+                try {
+                    if (failure.get() == null) task.run();
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    backlog.release();
+                }
+            }
+        }
+    }
+}
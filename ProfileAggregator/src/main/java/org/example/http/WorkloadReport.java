@@ -0,0 +1,333 @@
+package org.example.http;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesures d'une exécution de scénario : un histogramme de latences par opération (nom de l'OperationType,
+ * ou "GET /products/{name}" en rejeu de logs) et par utilisateur, et un compteur par code HTTP
+ * (-1 = pas de réponse). Enregistrement concurrent sans verrou.
+ * Les connexions (/auth/login) ne sont pas comptées.
+ */
+public class WorkloadReport {
+
+    // Répertoire des mesures (relatif à ProfileAggregator) : workload-report.json et workload-report.csv
+    public static final Path DEFAULT_DIR = Paths.get("../logs/Workload").toAbsolutePath().normalize();
+
+    static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p99_9"};
+
+    // Latences et erreurs (réponse absente ou non 2xx) d'une opération ou d'un utilisateur
+    public record Series(LatencyHistogram latencies, LongAdder errors) {
+
+        Series() {
+            this(new LatencyHistogram(), new LongAdder());
+        }
+
+        void merge(Series other) {
+            latencies.merge(other.latencies());
+            errors.add(other.errors().sum());
+        }
+
+        void write(DataOutput out) throws IOException {
+            latencies.write(out);
+            out.writeLong(errors.sum());
+        }
+
+        static Series read(DataInput in) throws IOException {
+            Series series = new Series(LatencyHistogram.read(in), new LongAdder());
+            series.errors().add(in.readLong());
+            return series;
+        }
+    }
+
+    private final double targetRate;
+    // copie en direct des enregistrements, null hors exécution suivie par l'interface
+    private final LiveMetrics live;
+    private final Map<String, Series> operations = new ConcurrentHashMap<>();
+    private final Map<String, Series> users = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private long startNanos;
+    private long elapsedNanos;
+
+    // targetRate : débit visé en modèle ouvert, NaN pour un scénario en boucle fermée
+    WorkloadReport(double targetRate) {
+        this(targetRate, null);
+    }
+
+    WorkloadReport(double targetRate, LiveMetrics live) {
+        this.targetRate = targetRate;
+        this.live = live;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    void record(String email, OperationType type, long latencyNanos, int status) {
+        record(email, type.name(), latencyNanos, status);
+    }
+
+    void record(String email, String operation, long latencyNanos, int status) {
+        boolean error = status / 100 != 2;
+        record(operations.computeIfAbsent(operation, o -> new Series()), latencyNanos, error);
+        record(users.computeIfAbsent(email, e -> new Series()), latencyNanos, error);
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if (live != null) live.record(operation, latencyNanos);
+    }
+
+    private static void record(Series series, long latencyNanos, boolean error) {
+        series.latencies().record(latencyNanos);
+        if (error) series.errors().increment();
+    }
+
+    public double targetRate() {
+        return targetRate;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public Series operation(String operation) {
+        return operations.get(operation);
+    }
+
+    public Series user(String email) {
+        return users.get(email);
+    }
+
+    // Toutes opérations confondues
+    public Series total() {
+        Series total = new Series();
+        for (Series series : operations.values()) {
+            total.merge(series);
+        }
+        return total;
+    }
+
+    public SortedMap<Integer, Long> statusCounts() {
+        SortedMap<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, n) -> counts.put(status, n.sum()));
+        return counts;
+    }
+
+    // Requêtes par seconde sur la durée de l'exécution
+    public double throughput(Series series) {
+        return elapsedNanos > 0 ? series.latencies().count() * 1e9 / elapsedNanos : 0;
+    }
+
+    public static double errorRate(Series series) {
+        long count = series.latencies().count();
+        return count > 0 ? (double) series.errors().sum() / count : 0;
+    }
+
+    // ---------------------------------------------------------------- workers
+
+    /**
+     * Ajoute les mesures d'un worker lancé en même temps que les autres : séries et codes HTTP cumulés,
+     * durée = celle du worker le plus long.
+     */
+    void merge(WorkloadReport other) {
+        other.operations.forEach((name, series) -> operations.computeIfAbsent(name, n -> new Series()).merge(series));
+        other.users.forEach((email, series) -> users.computeIfAbsent(email, e -> new Series()).merge(series));
+        other.statuses.forEach((status, n) -> statuses.computeIfAbsent(status, s -> new LongAdder()).add(n.sum()));
+        elapsedNanos = Math.max(elapsedNanos, other.elapsedNanos);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeDouble(targetRate);
+        out.writeLong(elapsedNanos);
+        writeSeries(out, operations);
+        writeSeries(out, users);
+        out.writeInt(statuses.size());
+        for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeLong(entry.getValue().sum());
+        }
+    }
+
+    static WorkloadReport read(DataInput in) throws IOException {
+        WorkloadReport report = new WorkloadReport(in.readDouble());
+        report.elapsedNanos = in.readLong();
+        readSeries(in, report.operations);
+        readSeries(in, report.users);
+        int statuses = in.readInt();
+        for (int i = 0; i < statuses; i++) {
+            LongAdder n = new LongAdder();
+            report.statuses.put(in.readInt(), n);
+            n.add(in.readLong());
+        }
+        return report;
+    }
+
+    private static void writeSeries(DataOutput out, Map<String, Series> series) throws IOException {
+        out.writeInt(series.size());
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    private static void readSeries(DataInput in, Map<String, Series> into) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            into.put(in.readUTF(), Series.read(in));
+        }
+    }
+
+    // ---------------------------------------------------------------- sorties
+
+    // workload-report.json et workload-report.csv dans dir ; retourne le fichier JSON
+    public Path writeTo(Path dir) throws IOException {
+        Path json = dir.resolve("workload-report.json");
+        writeJson(json);
+        writeCsv(dir.resolve("workload-report.csv"));
+        return json;
+    }
+
+    /**
+     * {"elapsedMs", "targetRate", "total": {...}, "operations": {opération: {...}}, "users": {email: {...}},
+     * "statusCodes": {code: n}} ; latences en millisecondes.
+     */
+    public void writeJson(Path out) throws IOException {
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        try (JsonGenerator gen = new JsonFactory().createGenerator(Files.newOutputStream(out), JsonEncoding.UTF8)) {
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+            gen.writeNumberField("elapsedMs", elapsedNanos / 1e6);
+            if (!Double.isNaN(targetRate)) gen.writeNumberField("targetRate", targetRate);
+
+            gen.writeFieldName("total");
+            writeSeries(gen, total());
+
+            gen.writeObjectFieldStart("operations");
+            for (Map.Entry<String, Series> entry : new TreeMap<>(operations).entrySet()) {
+                gen.writeFieldName(entry.getKey());
+                writeSeries(gen, entry.getValue());
+            }
+            gen.writeEndObject();
+
+            gen.writeObjectFieldStart("users");
+            for (Map.Entry<String, Series> entry : new TreeMap<>(users).entrySet()) {
+                gen.writeFieldName(entry.getKey());
+                writeSeries(gen, entry.getValue());
+            }
+            gen.writeEndObject();
+
+            gen.writeObjectFieldStart("statusCodes");
+            for (Map.Entry<Integer, Long> entry : statusCounts().entrySet()) {
+                gen.writeNumberField(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            gen.writeEndObject();
+
+            gen.writeEndObject();
+        }
+    }
+
+    private void writeSeries(JsonGenerator gen, Series series) throws IOException {
+        LatencyHistogram h = series.latencies();
+        gen.writeStartObject();
+        gen.writeNumberField("count", h.count());
+        gen.writeNumberField("errors", series.errors().sum());
+        gen.writeNumberField("errorRate", errorRate(series));
+        gen.writeNumberField("throughput", throughput(series));
+        for (int q = 0; q < QUANTILES.length; q++) {
+            gen.writeNumberField(QUANTILE_NAMES[q] + "Ms", h.quantile(QUANTILES[q]) / 1e6);
+        }
+        gen.writeNumberField("maxMs", h.max() / 1e6);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Une ligne par série (scope total / operation / user) puis une par code HTTP (scope status, colonne count).
+     */
+    public void writeCsv(Path out) throws IOException {
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(out); PrintWriter csv = new PrintWriter(writer)) {
+            csv.print("scope,name,count,errors,errorRate,throughput");
+            for (String name : QUANTILE_NAMES) {
+                csv.print("," + name + "Ms");
+            }
+            csv.println(",maxMs");
+
+            writeCsvRow(csv, "total", "", total());
+            for (Map.Entry<String, Series> entry : new TreeMap<>(operations).entrySet()) {
+                writeCsvRow(csv, "operation", entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<String, Series> entry : new TreeMap<>(users).entrySet()) {
+                writeCsvRow(csv, "user", entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<Integer, Long> entry : statusCounts().entrySet()) {
+                csv.println("status," + entry.getKey() + "," + entry.getValue() + ",,,,,,,,");
+            }
+        }
+    }
+
+    private void writeCsvRow(PrintWriter csv, String scope, String name, Series series) {
+        LatencyHistogram h = series.latencies();
+        StringBuilder row = new StringBuilder()
+                .append(scope).append(',').append(name).append(',')
+                .append(h.count()).append(',').append(series.errors().sum()).append(',')
+                .append(format(errorRate(series))).append(',').append(format(throughput(series)));
+        for (double q : QUANTILES) {
+            row.append(',').append(format(h.quantile(q) / 1e6));
+        }
+        row.append(',').append(format(h.max() / 1e6));
+        csv.println(row);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    // Résumé lisible pour la zone de sortie de l'interface
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        Series total = total();
+        sb.append(String.format("%d requêtes en %.1f s : %.1f req/s", total.latencies().count(),
+                elapsedNanos / 1e9, throughput(total)));
+        if (!Double.isNaN(targetRate)) sb.append(String.format(" (%.1f visés)", targetRate));
+        sb.append(String.format(", %.2f %% d'erreurs%n", 100 * errorRate(total)));
+
+        appendLine(sb, "TOTAL", total);
+        for (Map.Entry<String, Series> entry : new TreeMap<>(operations).entrySet()) {
+            appendLine(sb, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Series> entry : new TreeMap<>(users).entrySet()) {
+            appendLine(sb, entry.getKey(), entry.getValue());
+        }
+        sb.append("  codes HTTP : ").append(statusCounts()).append(System.lineSeparator());
+        return sb.toString();
+    }
+
+    private void appendLine(StringBuilder sb, String name, Series series) {
+        LatencyHistogram h = series.latencies();
+        sb.append(String.format("  %-24s n=%-7d err=%-5d p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms%n",
+                name, h.count(), series.errors().sum(),
+                h.quantile(0.5) / 1e6, h.quantile(0.9) / 1e6, h.quantile(0.99) / 1e6,
+                h.quantile(0.999) / 1e6, h.max() / 1e6));
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.ui;
+
+import org.example.http.LatencyHistogram;
+import org.example.http.LiveMetrics;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tableau de bord de l'exécution en cours : les {@link LiveMetrics} du runner sont échantillonnées toutes
+ * les 250 ms par un javax.swing.Timer, donc sur l'EDT, quel que soit le débit (pas d'invokeLater par requête).
+ * Par opération : req/s sur le dernier intervalle et p99 glissant sur la dernière seconde.
+ */
+public class LiveDashboardPanel extends JPanel {
+
+    private static final int SAMPLE_MILLIS = 250;
+    // p99 glissant sur WINDOW_SAMPLES intervalles, soit 1 s
+    private static final int WINDOW_SAMPLES = 4;
+
+    private final JLabel summaryLabel = new JLabel("Aucune exécution en cours");
+    private final DefaultTableModel model = new DefaultTableModel(new Object[]{"Opération", "req/s", "p99 1 s (ms)"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final Timer timer = new Timer(SAMPLE_MILLIS, e -> refresh());
+    private final Map<String, ArrayDeque<LatencyHistogram>> windows = new HashMap<>();
+
+    private LiveMetrics metrics;
+
+    public LiveDashboardPanel() {
+        setLayout(new BorderLayout());
+        setBorder(BorderFactory.createTitledBorder("Exécution en direct"));
+        setPreferredSize(new Dimension(340, 0));
+
+        add(summaryLabel, BorderLayout.NORTH);
+        add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+    }
+
+    // Sur l'EDT, avant le lancement de l'exécution
+    public void start(LiveMetrics metrics) {
+        this.metrics = metrics;
+        metrics.sample(); // repart d'intervalles vides : rien de l'exécution précédente
+        windows.clear();
+        model.setRowCount(0);
+        summaryLabel.setText("Démarrage...");
+        timer.start();
+    }
+
+    // Sur l'EDT, une fois l'exécution terminée ou annulée
+    public void stop(String status) {
+        timer.stop();
+        metrics = null;
+        summaryLabel.setText(status);
+    }
+
+    private void refresh() {
+        if (metrics == null) return;
+        LiveMetrics.Sample sample = metrics.sample();
+
+        double total = 0;
+        model.setRowCount(0);
+        for (Map.Entry<String, LatencyHistogram> entry : sample.operations().entrySet()) {
+            ArrayDeque<LatencyHistogram> window = windows.computeIfAbsent(entry.getKey(), k -> new ArrayDeque<>());
+            window.addLast(entry.getValue());
+            if (window.size() > WINDOW_SAMPLES) window.removeFirst();
+
+            LatencyHistogram lastSecond = new LatencyHistogram();
+            for (LatencyHistogram interval : window) {
+                lastSecond.merge(interval);
+            }
+            double throughput = sample.throughput(entry.getValue());
+            total += throughput;
+            model.addRow(new Object[]{
+                    entry.getKey(),
+                    String.format("%.0f", throughput),
+                    String.format("%.1f", lastSecond.quantile(0.99) / 1e6)
+            });
+        }
+        summaryLabel.setText(String.format("%.0f req/s, %d requêtes en vol", total, sample.inFlight()));
+    }
+}
@@ -1,11 +1,26 @@
 package org.example.ui;
 
 import org.example.UserProfileAggregatorService;
+import org.example.aggregation.AggregationMode;
+import org.example.aggregation.WindowSpec;
 import org.example.http.ApiScenarioRequest;
 import org.example.http.ApiWorkloadRunner;
+import org.example.http.LogReplayer;
+import org.example.http.TokenCache;
+import org.example.http.WorkloadReport;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -15,9 +30,33 @@ public class UserProfileToolFrame extends JFrame {
     private final JTextField baseUrlField;
     private final JTabbedPane tabbedPane;
     private final JTextArea outputArea;
+    private final JComboBox<AggregationMode> aggregationModeCombo;
+    private final JTextField fromDateField;
+    private final JTextField toDateField;
+    private final JTextField windowsField;
+    private final JSpinner maxInFlightSpinner;
+    private final JComboBox<HttpClient.Version> httpVersionCombo;
+    private final JSpinner connectionsSpinner;
+    private final JTextField rateField;
+    private final JTextField replaySpeedField;
+    private final JButton stopButton;
+    private final LiveDashboardPanel dashboard = new LiveDashboardPanel();
+
+    // Scénario ou rejeu en cours (un seul à la fois), interrompu par "Arrêter" ; null sinon
+    private Thread currentRun;
+
+    private static final int PREVIEW_CHARS = 1 << 20;
+
+    // Log rejoué par "Rejouer api.log"
+    private static final Path REPLAY_LOG =
+            Paths.get("../logs/APIGenerated/api.log").toAbsolutePath().normalize();
+
 
     private final java.util.List<UserWorkloadPanel> userPanels = new ArrayList<>();
 
+    // Jetons conservés d'une exécution de scénario à l'autre
+    private final TokenCache tokenCache = new TokenCache();
+
     private static final Map<String, String> SEEDED_USERS = Map.of(
             "user1@example.com", "password1",
             "user2@example.com", "password2",
@@ -42,12 +81,51 @@ public class UserProfileToolFrame extends JFrame {
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         baseUrlField = new JTextField("http://localhost:8080/api", 30);
         JButton runScenarioButton = new JButton("Exécuter le scénario");
+        // requêtes simultanées max, tous utilisateurs confondus
+        maxInFlightSpinner = new JSpinner(new SpinnerNumberModel(ApiWorkloadRunner.DEFAULT_MAX_IN_FLIGHT, 1, 10_000, 1));
+        // HTTP/1.1 ou HTTP/2 (h2c), et nombre de clients HTTP : en HTTP/2, une connexion par client
+        httpVersionCombo = new JComboBox<>(new HttpClient.Version[]{HttpClient.Version.HTTP_1_1, HttpClient.Version.HTTP_2});
+        connectionsSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 64, 1));
+        // débit cible du modèle ouvert (req/s) ; vide = chaque utilisateur enchaîne ses opérations
+        rateField = new JTextField(5);
+        JButton replayButton = new JButton("Rejouer api.log");
+        // facteur d'accélération du rejeu (1, 10...) ou "max" pour enchaîner sans attendre
+        replaySpeedField = new JTextField("1", 4);
+        stopButton = new JButton("Arrêter");
+        stopButton.setEnabled(false);
         JButton aggregateButton = new JButton("Agréger les profils");
+        JButton aggregateWindowedButton = new JButton("Agréger par fenêtres");
+        aggregationModeCombo = new JComboBox<>(AggregationMode.values());
+        aggregationModeCombo.setSelectedItem(AggregationMode.PARALLEL);
+        // période du mode "logs archivés" (yyyy-MM-dd, vide = pas de borne, "Au" inclus)
+        fromDateField = new JTextField(8);
+        toDateField = new JTextField(8);
+        // fenêtres de "Agréger par fenêtres" : taille[/pas], séparées par des virgules
+        windowsField = new JTextField("5m,1h,1d/1h", 10);
 
         topPanel.add(new JLabel("Base URL:"));
         topPanel.add(baseUrlField);
+        topPanel.add(new JLabel("En vol max:"));
+        topPanel.add(maxInFlightSpinner);
+        topPanel.add(httpVersionCombo);
+        topPanel.add(new JLabel("Connexions:"));
+        topPanel.add(connectionsSpinner);
+        topPanel.add(new JLabel("Débit (req/s):"));
+        topPanel.add(rateField);
         topPanel.add(runScenarioButton);
+        topPanel.add(replayButton);
+        topPanel.add(new JLabel("Vitesse:"));
+        topPanel.add(replaySpeedField);
+        topPanel.add(stopButton);
         topPanel.add(aggregateButton);
+        topPanel.add(aggregationModeCombo);
+        topPanel.add(new JLabel("Du:"));
+        topPanel.add(fromDateField);
+        topPanel.add(new JLabel("Au:"));
+        topPanel.add(toDateField);
+        topPanel.add(new JLabel("Fenêtres:"));
+        topPanel.add(windowsField);
+        topPanel.add(aggregateWindowedButton);
 
         // CENTRE: onglets par user
         tabbedPane = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
@@ -74,18 +152,30 @@ public class UserProfileToolFrame extends JFrame {
         getContentPane().setLayout(new BorderLayout());
         getContentPane().add(topPanel, BorderLayout.NORTH);
         getContentPane().add(tabbedPane, BorderLayout.CENTER);
+        getContentPane().add(dashboard, BorderLayout.EAST);
         getContentPane().add(outputScroll, BorderLayout.SOUTH);
 
         // Actions
         runScenarioButton.addActionListener(e -> runScenario());
+        replayButton.addActionListener(e -> replayLog());
+        stopButton.addActionListener(e -> {
+            if (currentRun != null) currentRun.interrupt();
+        });
         aggregateButton.addActionListener(e -> aggregateProfiles());
+        aggregateWindowedButton.addActionListener(e -> aggregateWindowedProfiles());
+    }
+
+    // Exécuteur configuré par la barre du haut ; les jetons sont partagés entre exécutions
+    private ApiWorkloadRunner newRunner() {
+        return new ApiWorkloadRunner(baseUrlField.getText().trim(), (Integer) maxInFlightSpinner.getValue(), tokenCache,
+                (HttpClient.Version) httpVersionCombo.getSelectedItem(), (Integer) connectionsSpinner.getValue());
     }
 
     private void runScenario() {
-        new Thread(() -> {
+        ApiWorkloadRunner runner = newRunner();
+        String rate = rateField.getText().trim();
+        startRun(runner, () -> {
             try {
-                String baseUrl = baseUrlField.getText().trim();
-                ApiWorkloadRunner runner = new ApiWorkloadRunner(baseUrl);
 
                 List<ApiScenarioRequest> allRequests = new ArrayList<>();
                 for (UserWorkloadPanel panel : userPanels) {
@@ -93,13 +183,74 @@ public class UserProfileToolFrame extends JFrame {
                 }
 
                 appendOutput("Exécution du scénario...\n");
-                runner.runScenario(allRequests);
-                appendOutput("Scénario terminé.\n");
+                WorkloadReport report = rate.isEmpty()
+                        ? runner.runScenario(allRequests)
+                        : runner.runOpenModel(allRequests, Double.parseDouble(rate));
+                Path reportFile = report.writeTo(WorkloadReport.DEFAULT_DIR);
+                appendOutput("Scénario terminé.\n" + report
+                        + "Connexions /auth/login depuis le lancement : " + tokenCache.logins() + "\n"
+                        + "Mesures écrites dans " + reportFile.getParent() + "\n");
             } catch (Exception ex) {
-                ex.printStackTrace();
-                appendOutput("Erreur lors de l'exécution du scénario: " + ex.getMessage() + "\n");
+                runFailed("Erreur lors de l'exécution du scénario", ex);
             }
-        }).start();
+        });
+    }
+
+    private void replayLog() {
+        ApiWorkloadRunner runner = newRunner();
+        String speedText = replaySpeedField.getText().trim();
+        startRun(runner, () -> {
+            try {
+                double speed = speedText.equalsIgnoreCase("max")
+                        ? LogReplayer.AS_FAST_AS_POSSIBLE
+                        : Double.parseDouble(speedText);
+                // comptes connus de l'interface, sinon convention userN / passwordN de l'init MongoDB
+                LogReplayer replayer = new LogReplayer(runner, speed,
+                        email -> SEEDED_USERS.getOrDefault(email, ApiScenarioRequest.seededPassword(email)));
+
+                appendOutput("Rejeu de " + REPLAY_LOG.getFileName() + " (vitesse " + speedText + ")...\n");
+                WorkloadReport report = replayer.replay(REPLAY_LOG);
+                report.writeTo(WorkloadReport.DEFAULT_DIR);
+                appendOutput("Rejeu terminé : " + replayer.replayed() + " requêtes rejouées, "
+                        + replayer.skipped() + " lignes ignorées.\n" + report);
+            } catch (Exception ex) {
+                runFailed("Erreur lors du rejeu", ex);
+            }
+        });
+    }
+
+    // Sur l'EDT : lance body sur un thread dédié, suivi par le tableau de bord et annulable par "Arrêter"
+    private void startRun(ApiWorkloadRunner runner, Runnable body) {
+        if (currentRun != null) {
+            appendOutput("Une exécution est déjà en cours.\n");
+            return;
+        }
+        Thread run = new Thread(() -> {
+            try {
+                body.run();
+            } finally {
+                boolean cancelled = Thread.currentThread().isInterrupted();
+                SwingUtilities.invokeLater(() -> {
+                    currentRun = null;
+                    stopButton.setEnabled(false);
+                    dashboard.stop(cancelled ? "Exécution annulée" : "Exécution terminée");
+                });
+            }
+        });
+        currentRun = run;
+        stopButton.setEnabled(true);
+        dashboard.start(runner.live());
+        run.start();
+    }
+
+    private void runFailed(String message, Exception ex) {
+        if (ex instanceof InterruptedException || ex instanceof InterruptedIOException) {
+            Thread.currentThread().interrupt(); // pour startRun : exécution annulée
+            appendOutput("Exécution annulée.\n");
+            return;
+        }
+        ex.printStackTrace();
+        appendOutput(message + ": " + ex.getMessage() + "\n");
     }
 
     private void aggregateProfiles() {
@@ -107,9 +258,18 @@ public class UserProfileToolFrame extends JFrame {
             try {
                 appendOutput("Agrégation des profils à partir des logs...\n");
                 UserProfileAggregatorService service = new UserProfileAggregatorService();
-                String json = service.aggregateAndWriteProfiles();
+                AggregationMode mode = (AggregationMode) aggregationModeCombo.getSelectedItem();
+                Path jsonFile;
+                if (mode == AggregationMode.ARCHIVED) {
+                    Instant from = parseDay(fromDateField.getText(), 0);
+                    Instant to = parseDay(toDateField.getText(), 1);
+                    jsonFile = service.aggregateAndWriteProfiles(from, to);
+                } else {
+                    jsonFile = service.aggregateAndWriteProfiles(mode);
+                }
                 appendOutput("Agrégation terminée. Résultat écrit dans profiles.json\n");
-                outputArea.setText(json);
+                String preview = readPreview(jsonFile);
+                SwingUtilities.invokeLater(() -> outputArea.setText(preview));
             } catch (Exception ex) {
                 ex.printStackTrace();
                 appendOutput("Erreur lors de l'agrégation: " + ex.getMessage() + "\n");
@@ -117,6 +277,40 @@ public class UserProfileToolFrame extends JFrame {
         }).start();
     }
 
+    private void aggregateWindowedProfiles() {
+        new Thread(() -> {
+            try {
+                appendOutput("Agrégation des profils par fenêtres à partir des logs...\n");
+                int windows = new UserProfileAggregatorService()
+                        .aggregateAndWriteWindowedProfiles(WindowSpec.parseList(windowsField.getText()));
+                appendOutput("Agrégation terminée. " + windows + " fenêtres écrites dans profiles-windowed.json\n");
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                appendOutput("Erreur lors de l'agrégation: " + ex.getMessage() + "\n");
+            }
+        }).start();
+    }
+
+    // Début du JSON seulement : le fichier complet peut dépasser ce qu'un JTextArea supporte
+    private String readPreview(Path file) throws IOException {
+        char[] buf = new char[PREVIEW_CHARS];
+        int n = 0;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            int read;
+            while (n < buf.length && (read = reader.read(buf, n, buf.length - n)) != -1) {
+                n += read;
+            }
+            String text = new String(buf, 0, n);
+            return reader.read() == -1 ? text : text + "\n... (aperçu tronqué, voir " + file + ")";
+        }
+    }
+
+    private Instant parseDay(String text, int plusDays) {
+        text = text.trim();
+        if (text.isEmpty()) return null;
+        return LocalDate.parse(text).plusDays(plusDays).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
     private void appendOutput(String text) {
         SwingUtilities.invokeLater(() -> outputArea.append(text));
     }
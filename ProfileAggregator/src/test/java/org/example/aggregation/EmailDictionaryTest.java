@@ -0,0 +1,58 @@
+package org.example.aggregation;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailDictionaryTest {
+
+    private static final int USERS = 100_000;
+
+    @Test
+    void sameEmailSameId() {
+        EmailDictionary dictionary = new EmailDictionary();
+        byte[] line = "{\"email\":\"alice@example.com\"}".getBytes(StandardCharsets.UTF_8);
+
+        int id = dictionary.idOf("alice@example.com");
+        // tranche de la ligne de log : même id, sans insertion
+        assertEquals(id, dictionary.idOf(line, 10, "alice@example.com".length()));
+        assertEquals(id + 1, dictionary.idOf("bob@example.com"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void idsSurviveGrowth() {
+        EmailDictionary dictionary = new EmailDictionary();
+        for (int i = 0; i < USERS; i++) {
+            assertEquals(i, dictionary.idOf(email(i)));
+        }
+        for (int i = 0; i < USERS; i++) {
+            assertEquals(i, dictionary.idOf(email(i)));
+            assertEquals(email(i), dictionary.email(i));
+        }
+        assertEquals(USERS, dictionary.size());
+    }
+
+    @Test
+    void heapBytesPerEmail() {
+        EmailDictionary dictionary = new EmailDictionary();
+        long emailBytes = 0;
+        for (int i = 0; i < USERS; i++) {
+            emailBytes += email(i).length();
+            dictionary.idOf(email(i));
+        }
+        // tableaux doublés à la croissance : au pire 2 x les octets des emails dans l'arène,
+        // 2 x 8 octets (offset, hash) et 4 x 4 octets de table par email
+        long bound = 2 * emailBytes + 32L * USERS;
+        assertTrue(dictionary.heapBytes() <= bound, dictionary.heapBytes() + " > " + bound);
+        // ~21 octets d'email : une String (objet + byte[]) en coûterait déjà plus de 60, hors HashMap
+        assertTrue(dictionary.heapBytes() / USERS < 80, dictionary.heapBytes() / USERS + " octets par email");
+    }
+
+    private static String email(int i) {
+        return "user" + i + "@example.com";
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.aggregation;
+
+import org.example.aggregation.rules.ProfileRules;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IncrementalLogAggregatorTest {
+
+    private static final String USER = "alice@example.com";
+
+    @TempDir
+    Path dir;
+
+    private Path log;
+    private ProfileRules rules;
+    private IncrementalLogAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        log = dir.resolve("api.log");
+        rules = ProfileRules.defaults();
+        aggregator = new IncrementalLogAggregator(dir.resolve("state/profiles-state.json"), rules);
+    }
+
+    @Test
+    void resumesAtCheckpoint() throws IOException {
+        append(log, "2026-10-16", 3);
+        assertEquals(3, reads(aggregator.aggregate(log)));
+
+        append(log, "2026-10-16", 2);
+        assertEquals(5, reads(aggregator.aggregate(log)));
+        assertEquals(5, reads(aggregator.aggregate(log)));
+    }
+
+    @Test
+    void truncatedFileIsReadFromStart() throws IOException {
+        append(log, "2026-10-16", 3);
+        assertEquals(3, reads(aggregator.aggregate(log)));
+
+        // même inode, plus court que l'offset du checkpoint
+        Files.write(log, lines("2026-10-17", 1), StandardOpenOption.TRUNCATE_EXISTING);
+        assertEquals(4, reads(aggregator.aggregate(log)));
+    }
+
+    @Test
+    void rewrittenFileIsReadFromStart() throws IOException {
+        append(log, "2026-10-16", 2);
+        assertEquals(2, reads(aggregator.aggregate(log)));
+
+        // même inode, plus long que l'offset mais en-tête différent
+        Files.write(log, lines("2026-10-17", 5), StandardOpenOption.TRUNCATE_EXISTING);
+        assertEquals(7, reads(aggregator.aggregate(log)));
+    }
+
+    @Test
+    void doubleRolloverAggregatesEveryArchive() throws IOException {
+        append(log, "2026-10-16", 2);
+        assertEquals(2, reads(aggregator.aggregate(log)));
+
+        // deux rotations sans exécution entre elles
+        append(log, "2026-10-16", 1);
+        rotate("2026-10-16");
+        append(log, "2026-10-17", 4);
+        rotate("2026-10-17");
+        append(log, "2026-10-18", 1);
+
+        assertEquals(2 + 1 + 4 + 1, reads(aggregator.aggregate(log)));
+        append(log, "2026-10-18", 1);
+        assertEquals(9, reads(aggregator.aggregate(log)));
+    }
+
+    @Test
+    void missingCheckpointArchiveSkipsOnlyItsTail() throws IOException {
+        Files.write(dir.resolve("api-2026-10-15.log"), lines("2026-10-15", 1)); // hors état : déjà passée
+        append(log, "2026-10-16", 2);
+        assertEquals(2, reads(aggregator.aggregate(log)));
+
+        append(log, "2026-10-16", 1);
+        rotate("2026-10-16");
+        append(log, "2026-10-17", 4);
+        rotate("2026-10-17");
+        append(log, "2026-10-18", 1);
+        // supprimée par maxHistory : sa dernière ligne est perdue, les journées suivantes ne le sont pas
+        Files.delete(dir.resolve("api-2026-10-16.log"));
+
+        assertEquals(2 + 4 + 1, reads(aggregator.aggregate(log)));
+    }
+
+    private void rotate(String day) throws IOException {
+        Files.move(log, dir.resolve("api-" + day + ".log"));
+    }
+
+    private int reads(ProfileStore store) {
+        return store.get(store.userId(USER), rules.counterIndex("totalReads"));
+    }
+
+    private static void append(Path file, String day, int count) throws IOException {
+        Files.write(file, lines(day, count), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static byte[] lines(String day, int count) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            out.append("{\"@timestamp\":\"").append(day).append("T10:00:0").append(i % 10)
+                    .append("Z\",\"userConnected\":{\"email\":\"").append(USER)
+                    .append("\"},\"path\":\"/products/\",\"opType\":\"READ\"}\n");
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.aggregation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Le scanner doit lire les mêmes valeurs que l'ancien chemin Jackson (readTree + asText)
+class LogLineScannerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[] FIELDS = {"email", "userConnected.email", "opType", "query.minPrice", "@timestamp"};
+    private static final int EMAIL = 0;
+    private static final int CONNECTED_EMAIL = 1;
+    private static final int OP_TYPE = 2;
+    private static final int MIN_PRICE = 3;
+    private static final int TIMESTAMP = 4;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // email à plat
+            "{\"email\":\"alice@example.com\",\"opType\":\"READ\"}",
+            // email dans le MDC userConnected
+            "{\"userConnected\":{\"email\":\"bob@example.com\",\"userId\":\"42\"},\"opType\":\"WRITE\"}",
+            // échappements
+            "{\"email\":\"a\\\"b\\\\c@example.com\",\"opType\":\"R\\u00e9AD\\n\\t\"}",
+            "{\"email\":\"\\u0041lice@example.com\",\"message\":\"x\\\"}y\",\"opType\":\"READ\"}",
+            // nulls JSON
+            "{\"email\":null,\"userConnected\":null,\"opType\":null}",
+            "{\"userConnected\":{\"email\":null},\"query.minPrice\":null}",
+            // valeurs imbriquées et tableaux sautés
+            "{\"extra\":{\"a\":[1,{\"b\":\"}\"}]},\"email\":\"c@example.com\",\"tags\":[\"x\",\"y\"]}",
+            // espaces
+            "  { \"email\" : \"d@example.com\" , \"opType\" : \"READ\" }  "
+    })
+    void stringsMatchJackson(String line) throws Exception {
+        LogLineScanner scanner = scan(line);
+        JsonNode node = MAPPER.readTree(line);
+
+        assertEquals(text(node.get("email")), scanner.string(EMAIL));
+        assertEquals(text(node.path("userConnected").get("email")), scanner.string(CONNECTED_EMAIL));
+        assertEquals(text(node.get("opType")), scanner.string(OP_TYPE));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"50", "50.0", "\"50.0\"", "-3.25", "1e2", "1.5E-3", "0.1", "123456789012345678", "null", "\"abc\"", "\"\""})
+    void numbersMatchJackson(String value) throws Exception {
+        String line = "{\"query.minPrice\":" + value + "}";
+        LogLineScanner scanner = scan(line);
+        String text = text(MAPPER.readTree(line).get("query.minPrice"));
+
+        double expected = Double.NaN;
+        if (text != null) {
+            try {
+                expected = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                // NaN, comme l'ancien parseDoubleOrNull
+            }
+        }
+        assertEquals(expected, scanner.doubleValue(MIN_PRICE), 0.0);
+    }
+
+    @Test
+    void nullLiteralIsAbsentButQuotedNullIsAString() throws Exception {
+        assertFalse(scan("{\"email\":null}").has(EMAIL));
+        LogLineScanner quoted = scan("{\"email\":\"null\"}");
+        assertTrue(quoted.has(EMAIL));
+        assertEquals("null", quoted.string(EMAIL));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2025-12-18T12:49:56Z",
+            "2025-12-18T12:49:56.473849455Z",
+            "2025-12-18T12:49:56.4+01:00",
+            "2025-12-18T12:49:56.473+0100",
+            "2025-12-18T00:10:00-05:30",
+            "2025-12-18T00:10:00-0530",
+            "2024-02-29T23:59:59.999+14:00"
+    })
+    void timestampsMatchJavaTime(String timestamp) throws Exception {
+        LogLineScanner scanner = scan("{\"@timestamp\":\"" + timestamp + "\"}");
+
+        String iso = timestamp.matches(".*[+-]\\d{4}$")
+                ? timestamp.substring(0, timestamp.length() - 2) + ":" + timestamp.substring(timestamp.length() - 2)
+                : timestamp;
+        assertEquals(OffsetDateTime.parse(iso).toInstant().toEpochMilli(), scanner.epochMillis(TIMESTAMP));
+    }
+
+    @Test
+    void hourOnlyOffset() throws Exception {
+        LogLineScanner scanner = scan("{\"@timestamp\":\"2025-12-18T12:00:00+02\"}");
+        assertEquals(OffsetDateTime.parse("2025-12-18T12:00:00+02:00").toInstant().toEpochMilli(),
+                scanner.epochMillis(TIMESTAMP));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "   ", "[1,2]", "{\"email\":\"x\"", "{\"email\" \"x\"}", "not json"})
+    void malformedLinesAreRejected(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        assertFalse(new LogLineScanner(FIELDS).scan(bytes, 0, bytes.length));
+    }
+
+    private static LogLineScanner scan(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        LogLineScanner scanner = new LogLineScanner(FIELDS);
+        assertTrue(scanner.scan(bytes, 0, bytes.length), line);
+        return scanner;
+    }
+
+    private static String text(JsonNode value) {
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+}
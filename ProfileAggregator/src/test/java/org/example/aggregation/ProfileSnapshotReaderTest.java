@@ -0,0 +1,106 @@
+package org.example.aggregation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfileSnapshotReaderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] KINDS = {"LECTEUR", "ECRIVAIN"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void exportMatchesColumns() throws Exception {
+        ProfileStore store = store(3);
+        Path file = dir.resolve("profiles.bin");
+        ProfileSnapshotWriter.write(file, store, columns(store));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ProfileSnapshotReader reader = new ProfileSnapshotReader(file)) {
+            reader.exportJson(out);
+        }
+        JsonNode users = MAPPER.readTree(out.toByteArray()).get("users");
+
+        assertEquals(3, users.size());
+        for (int id = 0; id < 3; id++) {
+            JsonNode user = users.get(id);
+            assertEquals("user" + id + "@example.com", user.get("email").asText());
+            assertEquals(id * 2, user.get("reads").asInt());
+            assertEquals(KINDS[id % 2], user.get("kind").asText());
+        }
+        // FLOAT64 sans valeur (NaN) : null, comme dans le JSON du démon
+        assertTrue(users.get(0).get("avgPrice").isNull());
+        assertEquals(1.5, users.get(1).get("avgPrice").asDouble());
+    }
+
+    @Test
+    void valuesAcrossMappingBoundaries() throws Exception {
+        ProfileStore store = store(50);
+        Path file = dir.resolve("profiles.bin");
+        ProfileSnapshotWriter.write(file, store, columns(store));
+
+        // mappings de 16 octets : emails, int et double à cheval sur deux mappings
+        try (ProfileSnapshotReader whole = new ProfileSnapshotReader(file);
+             ProfileSnapshotReader split = new ProfileSnapshotReader(file, 4)) {
+            int reads = split.columnIndex("reads");
+            int avgPrice = split.columnIndex("avgPrice");
+            for (int i = 0; i < 50; i++) {
+                int id = split.find("user" + i + "@example.com");
+                assertEquals(i * 2, split.intValue(id, reads));
+                assertEquals(whole.decimalValue(id, avgPrice), split.decimalValue(id, avgPrice));
+                assertEquals(whole.email(id), split.email(id));
+            }
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            whole.exportJson(expected);
+            split.exportJson(actual);
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        }
+    }
+
+    @Test
+    void closedReaderReleasesSnapshot() throws Exception {
+        Path file = dir.resolve("profiles.bin");
+        ProfileStore first = store(2);
+        ProfileSnapshotWriter.write(file, first, columns(first));
+        ProfileSnapshotReader reader = new ProfileSnapshotReader(file);
+        assertEquals(2, reader.intValue(reader.find("user1@example.com"), reader.columnIndex("reads")));
+        reader.close();
+
+        // mappings libérés : remplacement possible (Windows compris), le lecteur fermé ne lit plus rien
+        ProfileStore second = store(4);
+        ProfileSnapshotWriter.write(file, second, columns(second));
+        assertThrows(IllegalStateException.class, () -> reader.find("user1@example.com"));
+        try (ProfileSnapshotReader reopened = new ProfileSnapshotReader(file)) {
+            assertEquals(4, reopened.size());
+        }
+    }
+
+    private static ProfileStore store(int users) {
+        ProfileStore store = new ProfileStore(1);
+        for (int i = 0; i < users; i++) {
+            store.add(store.userId("user" + i + "@example.com"), 0, i * 2);
+        }
+        return store;
+    }
+
+    private static List<SnapshotColumn> columns(ProfileStore store) {
+        return List.of(
+                SnapshotColumn.counter("reads", id -> store.get(id, 0)),
+                SnapshotColumn.code("kind", KINDS, id -> id % 2),
+                SnapshotColumn.decimal("avgPrice", id -> id == 0 ? Double.NaN : id * 1.5));
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.aggregation.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogColumnTest {
+
+    @Test
+    void usersAcrossChunksStayIndependent() {
+        // précision 16 : 16 utilisateurs par bloc de 1 Mio, les ids 15/16 et 31/32 changent de bloc
+        HyperLogLogColumn column = new HyperLogLogColumn(16, 8);
+        column.ensureCapacity(40);
+        for (int id = 0; id < 40; id++) {
+            for (int v = 0; v < id; v++) {
+                column.add(id, hash("path" + v));
+            }
+        }
+        for (int id = 0; id < 40; id++) {
+            assertEquals(id, column.estimate(id), "id " + id);
+        }
+        assertEquals(40L << 16, column.heapBytes());
+    }
+
+    @Test
+    void lastChunkGrowsOnDemand() {
+        HyperLogLogColumn column = new HyperLogLogColumn(4, 10);
+        assertEquals(10 * 16, column.heapBytes());
+        column.add(9, hash("a"));
+        column.ensureCapacity(100_000);
+        // 65 536 utilisateurs par bloc en précision 4 : un bloc plein et un partiel
+        assertEquals(100_000L * 16, column.heapBytes());
+        assertEquals(1, column.estimate(9));
+        column.add(99_999, hash("b"));
+        assertEquals(1, column.estimate(99_999));
+    }
+
+    @Test
+    void mergeAcrossColumns() {
+        HyperLogLogColumn left = new HyperLogLogColumn(14, 70);
+        HyperLogLogColumn right = new HyperLogLogColumn(14, 70);
+        for (int v = 0; v < 1000; v++) {
+            left.add(65, hash("left" + v));
+            right.add(3, hash("right" + v));
+        }
+        left.merge(65, right, 3);
+        long estimate = left.estimate(65);
+        assertTrue(Math.abs(estimate - 2000) < 100, "estimation " + estimate);
+
+        HyperLogLogColumn copy = new HyperLogLogColumn(14, 1);
+        copy.merge(0, left.registers(65));
+        assertArrayEquals(left.registers(65), copy.registers(0));
+    }
+
+    private static long hash(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return HyperLogLogColumn.hash(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.daemon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfileIndexTest {
+
+    @Test
+    void untruncatedPageReturnsCurrentSeq() {
+        ProfileIndex index = new ProfileIndex();
+        publish(index, 1, "a", "b");
+        publish(index, 2, "c");
+
+        ProfileIndex.Changes changes = index.changedSince(1, null, 10);
+        assertEquals(List.of("c"), emails(changes));
+        assertEquals(2, changes.seq());
+        assertFalse(changes.truncated());
+        assertNull(changes.after());
+    }
+
+    @Test
+    void truncatedPageResumesInsideBatch() {
+        ProfileIndex index = new ProfileIndex();
+        // lot plus gros que limit : la reprise se fait dans le lot, pas au lot suivant
+        publish(index, 1, "a", "b", "c", "d", "e");
+        publish(index, 2, "f");
+
+        ProfileIndex.Changes first = index.changedSince(0, null, 2);
+        assertEquals(List.of("a", "b"), emails(first));
+        assertTrue(first.truncated());
+        assertEquals(0, first.seq());
+        assertEquals("b", first.after());
+
+        List<String> all = new ArrayList<>(emails(first));
+        ProfileIndex.Changes page = first;
+        while (page.truncated()) {
+            page = index.changedSince(page.seq(), page.after(), 2);
+            all.addAll(emails(page));
+        }
+        assertEquals(List.of("a", "b", "c", "d", "e", "f"), all);
+        assertEquals(2, page.seq());
+    }
+
+    @Test
+    void profileUpdatedDuringPagingIsNotMissed() {
+        ProfileIndex index = new ProfileIndex();
+        publish(index, 1, "a", "b", "c", "d");
+
+        ProfileIndex.Changes first = index.changedSince(0, null, 2);
+        assertEquals(List.of("a", "b"), emails(first));
+        // "c" quitte le lot 1 avant d'avoir été lu : il revient dans le lot 2, "d" ne doit pas être sauté
+        publish(index, 2, "c", "a");
+
+        ProfileIndex.Changes rest = index.changedSince(first.seq(), first.after(), 10);
+        assertEquals(List.of("d", "a", "c"), emails(rest));
+        assertFalse(rest.truncated());
+        assertEquals(2, rest.seq());
+        assertEquals(4, index.size());
+    }
+
+    private static void publish(ProfileIndex index, long seq, String... emails) {
+        List<ProfileIndex.Profile> updated = new ArrayList<>();
+        for (String email : emails) {
+            updated.add(new ProfileIndex.Profile(email, seq, 0, ("{\"email\":\"" + email + "\"}").getBytes()));
+        }
+        index.publish(seq, updated, Map.of());
+    }
+
+    private static List<String> emails(ProfileIndex.Changes changes) {
+        return changes.profiles().stream().map(ProfileIndex.Profile::email).toList();
+    }
+}
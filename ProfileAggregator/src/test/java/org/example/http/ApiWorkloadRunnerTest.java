@@ -0,0 +1,73 @@
+package org.example.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ApiWorkloadRunnerTest {
+
+    private HttpServer server;
+    private final CountDownLatch firstRequest = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/auth/login", exchange -> respond(exchange, "{\"token\":\"t\"}"));
+        server.createContext("/products", exchange -> {
+            firstRequest.countDown();
+            respond(exchange, "[]");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void openModelStopsAsSoonAsInterrupted() throws Exception {
+        ApiWorkloadRunner runner = new ApiWorkloadRunner("http://127.0.0.1:" + server.getAddress().getPort());
+        List<ApiScenarioRequest> scenario = List.of(
+                new ApiScenarioRequest("user1@example.com", "password1", OperationType.READ_PRODUCTS_LIST, 1));
+        AtomicReference<Exception> thrown = new AtomicReference<>();
+
+        // une arrivée toutes les 10 s : sans test d'interruption dans l'attente, l'arrêt prendrait jusqu'à 10 s
+        Thread run = Thread.ofPlatform().start(() -> {
+            try {
+                runner.runOpenModel(scenario, 0.1, Duration.ofMinutes(1));
+            } catch (Exception e) {
+                thrown.set(e);
+            }
+        });
+        assertTrue(firstRequest.await(5, TimeUnit.SECONDS));
+        run.interrupt();
+        run.join(2000);
+
+        assertFalse(run.isAlive(), "annulation non prise en compte pendant l'attente");
+        assertInstanceOf(InterruptedException.class, thrown.get());
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
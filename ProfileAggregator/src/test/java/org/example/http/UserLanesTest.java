@@ -0,0 +1,42 @@
+package org.example.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class UserLanesTest {
+
+    @Test
+    void tasksOfOneUserRunInOrder() throws Exception {
+        List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+        try (UserLanes lanes = new UserLanes(4)) {
+            for (int i = 0; i < 100; i++) {
+                int n = i;
+                lanes.submit("alice@example.com", () -> done.add(n));
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, done.get(i));
+        }
+    }
+
+    @Test
+    void rejectedSubmitReleasesItsSlot() {
+        UserLanes lanes = new UserLanes(1);
+        lanes.cancel();
+        // un seul emplacement : s'il fuyait au premier rejet, le second submit bloquerait indéfiniment
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(RejectedExecutionException.class, () -> lanes.submit("alice@example.com", () -> { }));
+            assertThrows(RejectedExecutionException.class, () -> lanes.submit("alice@example.com", () -> { }));
+        });
+        lanes.close();
+    }
+}